@@ -0,0 +1,314 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replays a script of console commands against a board as fast as possible.
+ *
+ * The script uses the console's commands, one per line: h row column, s file, ! and q,
+ * plus d to display the board. Commands are tokenized straight from a buffered
+ * channel without creating strings (apart from the file name of s), applied
+ * back to back, and the board is only drawn when the script asks for it with
+ * d or !, and once at the end. Instead of a message per command, a summary
+ * of what every kind of command did is printed when the script ends, the
+ * player quits, or every ship is sunk.
+ */
+public class BatchRunner {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int END = -1;
+
+    private final Battleship game;
+
+    private final Board board;
+
+    private final PrintStream out;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private final byte[] name = new byte[1024];
+
+    private ReadableByteChannel channel;
+
+    private boolean exhausted;
+
+    private long lines;
+    private long shots;
+    private long hits;
+    private long misses;
+    private long sinks;
+    private long alreadyPlayed;
+    private long outOfBounds;
+    private long badShots;
+    private long displays;
+    private long cheats;
+    private long saves;
+    private long failedSaves;
+    private long badCommands;
+    private boolean quit;
+    private long elapsedNanos;
+
+    /**
+     * @param game the game to play; its board is used as it is
+     * @param out where displays and the summary are printed
+     */
+    public BatchRunner(Battleship game, PrintStream out) {
+        this.game = game;
+        this.board = game.getBoard();
+        this.out = out;
+        game.setOutput(out, Charset.defaultCharset());
+    }
+
+    /**
+     * Run a script to its end, or until q or all ships are sunk.
+     * @param script the commands
+     * @throws IOException if the script cannot be read
+     */
+    public void run(ReadableByteChannel script) throws IOException {
+        channel = script;
+        buffer.clear().flip();
+        exhausted = false;
+        board.setHeadless(true);
+        long start = System.nanoTime();
+        while (!quit && !board.allSunk() && peek() != END) {
+            command();
+        }
+        elapsedNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Print the board and what the script did.
+     */
+    public void printSummary() {
+        game.display();
+        if (board.allSunk()) {
+            out.println(Battleship.ALL_SHIPS_SUNK);
+        }
+        out.println("commands: " + lines + " in " + elapsedNanos / 1000000 + " ms ("
+                + (elapsedNanos == 0 ? 0 : (long) (lines * 1e9 / elapsedNanos)) + "/sec)");
+        out.println("h: " + shots + " (hits " + hits + ", misses " + misses + ", sunk " + sinks
+                + ", already played " + alreadyPlayed + ", out of bounds " + outOfBounds + ", malformed " + badShots + ")");
+        out.println("s: " + saves + " (failed " + failedSaves + ")");
+        out.println("!: " + cheats);
+        out.println("d: " + displays);
+        out.println("q: " + (quit ? 1 : 0));
+        out.println("bad commands: " + badCommands);
+    }
+
+    private void command() throws IOException {
+        skipSpaces();
+        int c = lower(peek());
+        if (c == END) {
+            // nothing but spaces after the last newline
+            return;
+        }
+        lines++;
+        if (c == '\n') {
+            badCommands++;
+            advance();
+            return;
+        }
+        advance();
+        if (!isSeparator(peek())) {
+            badCommands++;
+        } else if (c == 'h') {
+            shot();
+        } else if (c == 'd' && atEndOfLine()) {
+            displays++;
+            game.display();
+        } else if (c == '!' && atEndOfLine()) {
+            cheats++;
+            game.cheat();
+        } else if (c == 'q' && atEndOfLine()) {
+            quit = true;
+        } else if (c == 's') {
+            save();
+        } else {
+            badCommands++;
+        }
+        skipLine();
+    }
+
+    private void shot() throws IOException {
+        shots++;
+        long row = number();
+        long column = row == Long.MIN_VALUE ? row : number();
+        if (column == Long.MIN_VALUE || !atEndOfLine()) {
+            badShots++;
+            return;
+        }
+        ShotResult result = row != (int) row || column != (int) column
+                ? ShotResult.OUT_OF_BOUNDS : board.fire((int) row, (int) column);
+        switch (result) {
+            case OUT_OF_BOUNDS:
+                outOfBounds++;
+                break;
+            case ALREADY_PLAYED:
+            case REPEATED:
+                alreadyPlayed++;
+                break;
+            case MISS:
+                misses++;
+                break;
+            case HIT:
+                hits++;
+                break;
+            default:
+                hits++;
+                sinks++;
+        }
+    }
+
+    private void save() throws IOException {
+        skipSpaces();
+        int length = 0;
+        int c = peek();
+        while (!isSeparator(c)) {
+            if (length < name.length) {
+                name[length++] = (byte) c;
+            }
+            advance();
+            c = peek();
+        }
+        if (length == 0 || !atEndOfLine()) {
+            badCommands++;
+            return;
+        }
+        saves++;
+        if (!game.save(new String(name, 0, length))) {
+            failedSaves++;
+        }
+    }
+
+    /**
+     * Read a decimal number, or return Long.MIN_VALUE if there is not one.
+     */
+    private long number() throws IOException {
+        skipSpaces();
+        int c = peek();
+        boolean negative = c == '-';
+        if (c == '-' || c == '+') {
+            advance();
+            c = peek();
+        }
+        if (c < '0' || c > '9') {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            if (value < Integer.MAX_VALUE) {
+                value = value * 10 + (c - '0');
+            }
+            advance();
+            c = peek();
+        }
+        return isSeparator(c) ? (negative ? -value : value) : Long.MIN_VALUE;
+    }
+
+    private boolean atEndOfLine() throws IOException {
+        skipSpaces();
+        int c = peek();
+        return c == '\n' || c == END;
+    }
+
+    private void skipLine() throws IOException {
+        int c = peek();
+        while (c != '\n' && c != END) {
+            advance();
+            c = peek();
+        }
+        if (c == '\n') {
+            advance();
+        }
+    }
+
+    private void skipSpaces() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\r') {
+            advance();
+            c = peek();
+        }
+    }
+
+    private static boolean isSeparator(int c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == END;
+    }
+
+    private static int lower(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private int peek() throws IOException {
+        if (!buffer.hasRemaining()) {
+            if (exhausted) {
+                return END;
+            }
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            if (read < 0) {
+                exhausted = true;
+                return END;
+            }
+        }
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    private void advance() {
+        buffer.position(buffer.position() + 1);
+    }
+
+    /**
+     * Run a command script.
+     * Usage: java BatchRunner (setup.txt | saved.bin) [script | -]
+     * Without a script, or with -, commands are read from standard input.
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println(Battleship.BAD_ARG_COUNT);
+            return;
+        }
+        try {
+            Battleship game;
+            if (args[0].endsWith(".bin")) {
+                game = new Battleship();
+                game.readFromBinFile(args[0]);
+                if (game.getBoard() == null) {
+                    return;
+                }
+            } else {
+                game = Battleship.readFromTxtFile(args[0], Boolean.getBoolean("battleship.sparse"));
+                if (game == null) {
+                    return;
+                }
+            }
+            BatchRunner runner = new BatchRunner(game, System.out);
+            if (args.length == 1 || args[1].equals("-")) {
+                runner.run(Channels.newChannel(System.in));
+            } else {
+                try (FileChannel script = FileChannel.open(Paths.get(args[1]), StandardOpenOption.READ)) {
+                    runner.run(script);
+                }
+            }
+            runner.printSummary();
+        } catch (NoSuchFileException e) {
+            System.out.println(Battleship.MISSING_SETUP_FILE + " " + e.getFile());
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        } catch (BattleshipException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -4,8 +4,11 @@
  */
 
 import java.io.*;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 
@@ -23,7 +26,53 @@ public class Battleship implements Serializable {
 
     private Board board;
 
-    private BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(System.in));
+    /**
+     * Reads commands from the console. Made by play, so that games driven
+     * through execute, such as server sessions, never pay for it.
+     */
+    private transient BufferedReader bufferedReader;
+
+    private transient PrintStream out = System.out;
+
+    /**
+     * Draws the board on out. Made when the board is first drawn, or by setOutput.
+     */
+    private transient BoardRenderer renderer;
+
+    /**
+     * When set, games can only be saved as plain file names inside this directory.
+     */
+    private transient Path saveDirectory;
+
+    /**
+     * Redraw only the squares that changed after each shot, using ANSI cursor movement.
+     */
+    private boolean incrementalDisplay;
+
+    /**
+     * Records every shot as it is played, or null.
+     */
+    private transient MoveJournal journal;
+
+    /**
+     * Where the game is recorded when it ends, or null.
+     */
+    private transient Path recordingFile;
+
+    /**
+     * Writes the game's output on its own thread, or null to write it directly.
+     */
+    private transient ConsoleSink console;
+
+    /**
+     * Logs every event on the board, or null.
+     */
+    private transient ConsoleSink eventLog;
+
+    /**
+     * Sunk messages waiting for the incremental display to be drawn.
+     */
+    private transient int heldSunkMessages;
 
     public Battleship() {
     }
@@ -36,6 +85,102 @@ public class Battleship implements Serializable {
         return board;
     }
 
+    public void setBoard(Board board) {
+        this.board = board;
+    }
+
+    /**
+     * Send the game's output somewhere other than the console.
+     * @param out where boards, messages and prompts are printed
+     * @param charset how the board's display characters are encoded
+     */
+    public void setOutput(PrintStream out, Charset charset) {
+        this.out = out;
+        this.renderer = new BoardRenderer(out, charset);
+    }
+
+    /**
+     * Print through an asynchronous sink, so the game never waits for the console.
+     * The sink is closed when the game quits, which writes out whatever is left.
+     * @param console the sink
+     */
+    public void setConsole(ConsoleSink console) {
+        setOutput(new PrintStream(console.stream(), false, Charset.defaultCharset()), Charset.defaultCharset());
+        this.console = console;
+    }
+
+    public ConsoleSink getEventLog() {
+        return eventLog;
+    }
+
+    /**
+     * Log every shot, hit, miss and sinking to a sink, which is closed when the game quits.
+     * @param eventLog the sink, which listens to the board from start on
+     */
+    public void setEventLog(ConsoleSink eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    public Path getSaveDirectory() {
+        return saveDirectory;
+    }
+
+    /**
+     * Confine saved games to one directory, for players who should not choose
+     * where files are written.
+     * @param saveDirectory the directory, or null to allow any path
+     */
+    public void setSaveDirectory(Path saveDirectory) {
+        this.saveDirectory = saveDirectory;
+    }
+
+    public boolean isIncrementalDisplay() {
+        return incrementalDisplay;
+    }
+
+    /**
+     * Choose between redrawing the whole board after every shot and redrawing
+     * only the squares that changed. The incremental display needs an ANSI terminal.
+     * @param incrementalDisplay true to redraw only the changes
+     */
+    public void setIncrementalDisplay(boolean incrementalDisplay) {
+        this.incrementalDisplay = incrementalDisplay;
+    }
+
+    public MoveJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Record every shot in a journal so that a crash loses nothing.
+     * If the directory holds an unfinished journaled game, that game
+     * is resumed in place of the current board.
+     * @see MoveJournal
+     * @param directory where the journal is kept
+     * @throws IOException if the journal cannot be read or written
+     */
+    public void openJournal(Path directory) throws IOException {
+        Board recovered = MoveJournal.recover(directory);
+        if (recovered != null && !recovered.allSunk()) {
+            board = recovered;
+        }
+        journal = MoveJournal.open(directory, board);
+    }
+
+    public Path getRecordingFile() {
+        return recordingFile;
+    }
+
+    /**
+     * Record the game when it ends, for replaying later.
+     * @see GameRecording
+     * @see Replay
+     * @param recordingFile a file of recordings to add the game to, or null not to record it
+     */
+    public void setRecordingFile(Path recordingFile) {
+        this.recordingFile = recordingFile;
+    }
+
     /**
      * Setup board
      * @param lines
@@ -76,11 +221,22 @@ public class Battleship implements Serializable {
      * If all ships are sunk then exit the game
      */
     public void promptPlayer() {
+        if (!prompt()) {
+            quit();
+        }
+    }
+
+    /**
+     * Prompt player for input, or announce that all ships are sunk.
+     * @return false if the game is over
+     */
+    private boolean prompt() {
         if (!board.allSunk()) {
-            System.out.print(PROMPT);
+            out.print(PROMPT);
+            return true;
         } else {
-            System.out.println(ALL_SHIPS_SUNK);
-            quit();
+            out.println(ALL_SHIPS_SUNK);
+            return false;
         }
     }
 
@@ -88,58 +244,131 @@ public class Battleship implements Serializable {
      * Play Battleship game
      */
     public void play() {
-        boolean exit = false;
-        String input = "";
-        board.display(System.out);
-        while (!exit) {
-            promptPlayer();
+        if (!start()) {
+            quit();
+        }
+        if (bufferedReader == null) {
+            bufferedReader = new BufferedReader(new InputStreamReader(System.in));
+        }
+        while (true) {
+            String input;
             try {
                 input = bufferedReader.readLine();
-                String[] commands = input.split(WHITESPACE);
-                if (commands.length > 0) {
-                    if (commands[0].equalsIgnoreCase("q")) {
-                        if (commands.length == 1) {
-                            quit();
-                        } else {
-                            System.out.println(BAD_ARG_COUNT + " q");
-                        }
-                    } else if (commands[0].equalsIgnoreCase("!")) {
-                        if (commands.length == 1) {
-                            cheat();
-                        } else {
-                            System.out.println(BAD_ARG_COUNT + " !");
-                        }
-                    } else if (commands[0].equalsIgnoreCase("s")) {
+            } catch (IOException e) {
+                e.printStackTrace();
+                input = null;
+            }
+            if (input == null || !execute(input)) {
+                quit();
+            }
+        }
+    }
 
-                        if (commands.length == 2) {
-                            save(commands[1]);
-                        } else {
-                            System.out.println(BAD_ARG_COUNT + " s");
-                        }
-                    } else if (commands[0].equalsIgnoreCase("h")) {
-                        if (commands.length == 3) {
-                            int rowNum = Integer.parseInt(commands[1]);
-                            int colNum = Integer.parseInt(commands[2]);
-                            hit(rowNum, colNum);
-                            board.display(System.out);
-                        } else {
-                            System.out.println(BAD_ARG_COUNT + " h");
-                        }
+    /**
+     * Show the board and the first prompt, and start listening to the board:
+     * the game prints the sunk message for each ship sunk, and the event log
+     * hears everything.
+     * @return false if the game is already over
+     */
+    public boolean start() {
+        board.setHeadless(false);
+        board.addListener(this::printSunkMessages);
+        if (eventLog != null) {
+            board.addListener(eventLog);
+        }
+        display();
+        return prompt();
+    }
+
+    /**
+     * Carry out one command line typed by the player and prompt for the next one.
+     * Nothing here exits the program; the caller decides what ending the game means.
+     * @param input the command line
+     * @return false if the player quit or all ships are sunk
+     */
+    public boolean execute(String input) {
+        long start = GameMetrics.start();
+        long allocated = GameMetrics.allocatedBytes();
+        String[] commands = input.split(WHITESPACE);
+        try {
+            if (commands.length > 0) {
+                if (commands[0].equalsIgnoreCase("q")) {
+                    if (commands.length == 1) {
+                        GameMetrics.endCommand(commands[0], start, allocated);
+                        return false;
+                    } else {
+                        out.println(BAD_ARG_COUNT + " q");
+                    }
+                } else if (commands[0].equalsIgnoreCase("!")) {
+                    if (commands.length == 1) {
+                        cheat();
                     } else {
-                        System.out.println(" Enter a valid command ");
+                        out.println(BAD_ARG_COUNT + " !");
                     }
+                } else if (commands[0].equalsIgnoreCase("s")) {
+
+                    if (commands.length == 2) {
+                        save(commands[1]);
+                    } else {
+                        out.println(BAD_ARG_COUNT + " s");
+                    }
+                } else if (commands[0].equalsIgnoreCase("v") && board instanceof SparseBoard) {
+                    if (commands.length == 3) {
+                        ((SparseBoard) board).moveViewport(Integer.parseInt(commands[1]), Integer.parseInt(commands[2]));
+                        display();
+                    } else {
+                        out.println(BAD_ARG_COUNT + " v");
+                    }
+                } else if (commands[0].equalsIgnoreCase("h")) {
+                    if (commands.length == 3) {
+                        int rowNum = Integer.parseInt(commands[1]);
+                        int colNum = Integer.parseInt(commands[2]);
+                        hit(rowNum, colNum);
+                        board.flushEvents();
+                        display();
+                        printHeldSunkMessages();
+                    } else {
+                        out.println(BAD_ARG_COUNT + " h");
+                    }
+                } else {
+                    out.println(" Enter a valid command ");
                 }
+            }
+        } catch (NumberFormatException e) {
+            out.println(BAD_COMMAND);
+        } catch (BattleshipException e) {
+            GameMetrics.exception(e);
+            out.println(e.getClass().getName() + ": " + e.getMessage());
+        }
+        board.flushEvents();
+        boolean playing = prompt();
+        GameMetrics.endCommand(commands.length > 0 ? commands[0] : "", start, allocated);
+        return playing;
+    }
 
-            } catch (IOException e) {
-                e.printStackTrace();
-            } catch (NumberFormatException e) {
-                System.out.println(BAD_COMMAND);
-            } catch (BattleshipException e) {
-                System.out.println(e.getClass().getName() + ": " + e.getMessage());
+    /**
+     * Print the sunk message for each ship sunk. The message goes above a
+     * whole board, so it is printed at once; an incremental display clears
+     * the screen below the board, so there it is held until the board is drawn.
+     */
+    private void printSunkMessages(GameEvents events) {
+        for (int i = 0; i < events.size(); i++) {
+            if (events.getType(i) == GameEvents.Type.SHIP_SUNK) {
+                if (incrementalDisplay) {
+                    heldSunkMessages++;
+                } else {
+                    out.println(Ship.SUNK_MESSAGE);
+                }
             }
         }
     }
 
+    private void printHeldSunkMessages() {
+        for (; heldSunkMessages > 0; heldSunkMessages--) {
+            out.println(Ship.SUNK_MESSAGE);
+        }
+    }
+
     /**
      * Hit a cell on the board
      * @param row
@@ -148,14 +377,43 @@ public class Battleship implements Serializable {
      * @throws CellPlayedException
      */
     public void hit(int row, int col) throws OutOfBoundsException, CellPlayedException {
-        board.getCell(row, col).hit();
+        long start = GameMetrics.start();
+        board.hit(row, col);
+        GameMetrics.end(GameMetrics.Operation.HIT, start);
+        if (journal != null) {
+            try {
+                journal.record(row, col);
+            } catch (IOException e) {
+                out.println("Error recording move in journal: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Show the board to the player, either whole or as the changes since the last shot.
+     */
+    public void display() {
+        long start = GameMetrics.start();
+        if (incrementalDisplay) {
+            renderer().update(board);
+        } else {
+            renderer().display(board);
+        }
+        GameMetrics.end(GameMetrics.Operation.DISPLAY, start);
     }
 
     /**
      * Display all ship locations in the board
      */
     public void cheat() {
-        board.fullDisplay(System.out);
+        renderer().fullDisplay(board);
+    }
+
+    private BoardRenderer renderer() {
+        if (renderer == null) {
+            renderer = new BoardRenderer(out);
+        }
+        return renderer;
     }
 
     /**
@@ -174,16 +432,27 @@ public class Battleship implements Serializable {
 
     /***
      * Save game into a file
+     * @see BoardFile
      * @param fileName
      * @return
      */
     public boolean save(String fileName) {
-        try (FileOutputStream fileOutputStream = new FileOutputStream(fileName);
-             ObjectOutputStream objectOutputStream = new ObjectOutputStream(fileOutputStream);) {
-            objectOutputStream.writeObject(board);
+        try {
+            Path path;
+            if (saveDirectory == null) {
+                path = Paths.get(fileName);
+            } else if (fileName.matches("[A-Za-z0-9_-][A-Za-z0-9._-]*")) {
+                path = saveDirectory.resolve(fileName);
+            } else {
+                out.println("Error saving game progress in " + fileName);
+                return false;
+            }
+            long start = GameMetrics.start();
+            BoardFile.write(board, path);
+            GameMetrics.end(GameMetrics.Operation.SAVE, start);
             return true;
-        } catch (IOException e) {
-            System.out.println("Error saving game progress in " + fileName);
+        } catch (IOException | InvalidPathException e) {
+            out.println("Error saving game progress in " + fileName);
             return false;
         }
     }
@@ -192,58 +461,132 @@ public class Battleship implements Serializable {
      * Quit the game
      */
     public void quit() {
+        if (recordingFile != null) {
+            try {
+                GameRecording.of(board).append(recordingFile);
+            } catch (IOException e) {
+                out.println("Error recording game in " + recordingFile);
+            }
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                out.println("Error closing journal: " + e.getMessage());
+            }
+        }
+        if (eventLog != null) {
+            try {
+                board.flushEvents();
+                eventLog.close();
+            } catch (IOException e) {
+                out.println("Error writing event log: " + e.getMessage());
+            }
+        }
+        if (console != null) {
+            try {
+                console.close();
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+            }
+        }
         System.exit(0);
     }
 
     /**
-     * Loading game from a save .bin file
+     * Load a new game from a setup .txt file.
+     * A malformed file is reported with the line and column of the problem.
+     * @see SetupParser
      * @param fileName
+     * @return the game, or null if the file is malformed or the board is too big
      */
-
     public static Battleship readFromTxtFile(String fileName) throws IOException, OverlapException, OutOfBoundsException {
-        try{
-        Battleship battleship = null;
-        List<String> lines = Files.readAllLines(Paths.get(fileName));
-        String[] dimensions = lines.get(0).split(WHITESPACE);
-        lines.remove(0);
-        if (dimensions.length == 2) {
-            int rows = Integer.parseInt(dimensions[0]);
-            int columns = Integer.parseInt(dimensions[1]);
-            if (rows <= MAX_DIM && columns <= MAX_DIM) {
-                battleship = new Battleship(rows, columns);
-                boolean isSetup= battleship.setup(lines);
-                if(!isSetup){
-                    System.out.println(BAD_CONFIG_FILE);
-                    return null;
-                }
-            } else {
-                System.out.println(DIM_TOO_BIG);
-                return null;
-            }
+        return readFromTxtFile(fileName, false);
+    }
 
-        } else {
-            System.out.println(BAD_CONFIG_FILE);
+    /**
+     * Load a new game from a setup .txt file, optionally onto a sparse board.
+     * A sparse board can be any size; the player sees a window of it, moved with v row column.
+     * @see SparseBoard
+     * @param fileName
+     * @param sparse true for a sparse board
+     * @return the game, or null if the file is malformed or an ordinary board is too big
+     */
+    public static Battleship readFromTxtFile(String fileName, boolean sparse)
+            throws IOException, OverlapException, OutOfBoundsException {
+        Loader loader = new Loader(sparse);
+        try {
+            SetupParser.parse(Paths.get(fileName), loader);
+            return loader.battleship;
+        } catch (OverlapException | OutOfBoundsException e) {
+            throw e;
+        } catch (BattleshipException e) {
+            System.out.println(e.getMessage());
             return null;
         }
-        return battleship;}
-        catch (RuntimeException e){
-            System.out.println(BAD_CONFIG_FILE);
-            return null;
+    }
+
+    /**
+     * Builds a game from a setup file while it is being parsed.
+     */
+    private static class Loader implements SetupParser.Handler {
+
+        private final boolean sparse;
+
+        private Battleship battleship;
+
+        Loader(boolean sparse) {
+            this.sparse = sparse;
+        }
+
+        @Override
+        public void dimensions(int rows, int columns) throws BattleshipException {
+            if (sparse) {
+                battleship = new Battleship();
+                battleship.board = new SparseBoard(rows, columns);
+                return;
+            }
+            if (rows > MAX_DIM || columns > MAX_DIM) {
+                throw new BattleshipException(DIM_TOO_BIG);
+            }
+            battleship = new Battleship(rows, columns);
+        }
+
+        @Override
+        public void ship(int row, int column, Ship.Orientation orientation, int length) throws BattleshipException {
+            new Ship(battleship.board, row, column, orientation, length);
         }
     }
 
+    /**
+     * Load a saved game. Files saved by older versions of the game are also accepted.
+     * @see BoardFile
+     * @param fileName
+     */
     public void readFromBinFile(String fileName) {
-        try (
-                FileInputStream fileInputStream = new FileInputStream(fileName);
-                ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream);) {
-            board = (Board) objectInputStream.readObject();
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-        } catch (FileNotFoundException e) {
-            System.out.println(MISSING_SETUP_FILE + " " + fileName);
+        try {
+            long start = GameMetrics.start();
+            board = BoardFile.read(Paths.get(fileName));
+            GameMetrics.end(GameMetrics.Operation.LOAD, start);
+        } catch (NoSuchFileException e) {
+            out.println(MISSING_SETUP_FILE + " " + fileName);
         } catch (IOException e) {
-            e.printStackTrace();
+            out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Play at the console, through an asynchronous sink so that the game
+     * loop never blocks on output. Set -Dbattleship.events=file to log every
+     * event on the board to a file as well.
+     */
+    private static void playOnConsole(Battleship battleship) throws IOException {
+        if (System.getProperty("battleship.events") != null) {
+            Path events = Paths.get(System.getProperty("battleship.events"));
+            battleship.setEventLog(new ConsoleSink(Files.newOutputStream(events)));
         }
+        battleship.setConsole(new ConsoleSink(System.out));
+        battleship.play();
     }
 
     /**
@@ -258,16 +601,32 @@ public class Battleship implements Serializable {
                 if (args[0].endsWith(".bin")) {
                     System.out.println("yes");
                     Battleship battleship = new Battleship();
+                    battleship.setIncrementalDisplay(Boolean.getBoolean("battleship.incremental"));
                     battleship.readFromBinFile(args[0]);
-                    battleship.play();
+                    if (battleship.getBoard() != null) {
+                        if (System.getProperty("battleship.record") != null) {
+                            battleship.setRecordingFile(Paths.get(System.getProperty("battleship.record")));
+                        }
+                        if (System.getProperty("battleship.journal") != null) {
+                            battleship.openJournal(Paths.get(System.getProperty("battleship.journal")));
+                        }
+                        playOnConsole(battleship);
+                    }
                 } else if (args[0].endsWith(".txt")) {
                     System.out.println("no; will read as a text setup file.");
-                    Battleship battleship = Battleship.readFromTxtFile(args[0]);
+                    Battleship battleship = Battleship.readFromTxtFile(args[0], Boolean.getBoolean("battleship.sparse"));
                     if(battleship == null){
                         System.exit(0);
                     }
                     else {
-                        battleship.play();
+                        battleship.setIncrementalDisplay(Boolean.getBoolean("battleship.incremental"));
+                        if (System.getProperty("battleship.record") != null) {
+                            battleship.setRecordingFile(Paths.get(System.getProperty("battleship.record")));
+                        }
+                        if (System.getProperty("battleship.journal") != null) {
+                            battleship.openJournal(Paths.get(System.getProperty("battleship.journal")));
+                        }
+                        playOnConsole(battleship);
                     }
 
                 } else {
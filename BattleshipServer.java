@@ -0,0 +1,444 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts many games of Battleship at once over TCP.
+ *
+ * Every connection is a session with its own Board, playing the same line-based
+ * q / ! / s / h protocol as the console game. Connections are multiplexed over a
+ * few non-blocking NIO event loops (one per core by default), so a session costs
+ * only its board and its buffers and one process can hold tens of thousands of
+ * games. Quitting or sinking every ship ends the session, never the server.
+ *
+ * Backpressure works per connection: when a client sends commands faster than
+ * it reads the replies, the server stops reading from it until the pending
+ * output drains. When the session limit is reached, new connections wait in
+ * the listen backlog until a session ends.
+ */
+public class BattleshipServer implements AutoCloseable {
+
+    /**
+     * Longest command line accepted, in bytes.
+     */
+    public static final int MAX_LINE = 1024;
+
+    /**
+     * Stop reading a session's commands while this much output is waiting to be sent.
+     */
+    private static final int HIGH_WATER = 64 * 1024;
+
+    /**
+     * Start reading again once the waiting output is down to this.
+     */
+    private static final int LOW_WATER = 16 * 1024;
+
+    private final ServerSocketChannel server;
+
+    private final Simulation.BoardFactory boards;
+
+    private final Path saveDirectory;
+
+    private final int maxSessions;
+
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    private final EventLoop[] loops;
+
+    private int nextLoop;
+
+    /**
+     * @param address where to listen
+     * @param boards makes the board for each new session
+     * @param saveDirectory where the s command saves games
+     * @param maxSessions most sessions open at once
+     * @param threads number of event loop threads
+     * @throws IOException if the server socket cannot be opened
+     */
+    public BattleshipServer(InetSocketAddress address, Simulation.BoardFactory boards, Path saveDirectory,
+                            int maxSessions, int threads) throws IOException {
+        this.boards = boards;
+        this.saveDirectory = saveDirectory;
+        this.maxSessions = maxSessions;
+        this.server = ServerSocketChannel.open();
+        this.server.bind(address, 1024);
+        this.server.configureBlocking(false);
+        this.loops = new EventLoop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new EventLoop(i);
+        }
+        server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Start the event loop threads.
+     */
+    public void start() {
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    /**
+     * @return the number of sessions currently open
+     */
+    public int getSessionCount() {
+        return sessions.get();
+    }
+
+    /**
+     * Stop accepting connections and close every session.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (EventLoop loop : loops) {
+            loop.execute(loop::shutdown);
+        }
+    }
+
+    /**
+     * One thread multiplexing many sessions over a selector.
+     */
+    private class EventLoop implements Runnable {
+
+        private final Selector selector;
+
+        private final Thread thread;
+
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        private final SplittableRandom random;
+
+        /**
+         * Reused for every read on this loop; sessions keep only their unfinished line.
+         */
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(16 * 1024);
+
+        private boolean acceptPaused;
+
+        EventLoop(int number) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "battleship-server-" + number);
+            this.random = new SplittableRandom(System.nanoTime() + number);
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (selector.isOpen()) {
+                    selector.select();
+                    for (Runnable task; (task = tasks.poll()) != null; ) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            try {
+                                accept(key);
+                            } catch (IOException e) {
+                                // the client went away, or we are out of file descriptors; try again later
+                            }
+                            continue;
+                        }
+                        Session session = (Session) key.attachment();
+                        try {
+                            if (key.isWritable()) {
+                                session.write();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                session.read(readBuffer);
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            session.close();
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                // the server was closed
+            }
+        }
+
+        private void shutdown() {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Session) {
+                    ((Session) key.attachment()).close();
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // nothing left to release
+            }
+        }
+
+        private void accept(SelectionKey key) throws IOException {
+            while (sessions.get() < maxSessions) {
+                SocketChannel channel = server.accept();
+                if (channel == null) {
+                    return;
+                }
+                sessions.incrementAndGet();
+                EventLoop loop = loops[nextLoop];
+                nextLoop = (nextLoop + 1) % loops.length;
+                loop.execute(() -> loop.open(channel));
+            }
+            key.interestOps(0);
+            acceptPaused = true;
+        }
+
+        private void resumeAccept() {
+            SelectionKey key = server.keyFor(selector);
+            if (acceptPaused && key != null && key.isValid()) {
+                acceptPaused = false;
+                key.interestOps(SelectionKey.OP_ACCEPT);
+            }
+        }
+
+        private void open(SocketChannel channel) {
+            try {
+                channel.configureBlocking(false);
+                Board board = boards.newBoard(random.split());
+                Session session = new Session(this, channel, board);
+                session.key = channel.register(selector, SelectionKey.OP_READ, session);
+                session.begin();
+            } catch (IOException | BattleshipException | RuntimeException e) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // already failing
+                }
+                sessionClosed();
+            }
+        }
+    }
+
+    private void sessionClosed() {
+        if (sessions.decrementAndGet() < maxSessions) {
+            loops[0].execute(loops[0]::resumeAccept);
+        }
+    }
+
+    /**
+     * Output written by the game, kept until the socket takes it.
+     */
+    private static class Output extends ByteArrayOutputStream {
+
+        private int sent;
+
+        Output() {
+            super(256);
+        }
+
+        int pending() {
+            return count - sent;
+        }
+
+        void sendTo(SocketChannel channel) throws IOException {
+            if (pending() > 0) {
+                sent += channel.write(ByteBuffer.wrap(buf, sent, count - sent));
+            }
+            if (sent == count) {
+                reset();
+                sent = 0;
+            }
+        }
+    }
+
+    /**
+     * One player's connection and game.
+     */
+    private class Session {
+
+        private final EventLoop loop;
+
+        private final SocketChannel channel;
+
+        private final Battleship game = new Battleship();
+
+        private final Output output = new Output();
+
+        private final byte[] line = new byte[MAX_LINE];
+
+        private int lineLength;
+
+        /**
+         * Input held back by backpressure, or null.
+         */
+        private ByteBuffer unread;
+
+        private boolean discarding;
+
+        private SelectionKey key;
+
+        private boolean ending;
+
+        private boolean closed;
+
+        Session(EventLoop loop, SocketChannel channel, Board board) {
+            this.loop = loop;
+            this.channel = channel;
+            game.setBoard(board);
+            game.setOutput(new PrintStream(output, false, StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+            game.setSaveDirectory(saveDirectory);
+        }
+
+        void begin() throws IOException {
+            ending = !game.start();
+            write();
+        }
+
+        /**
+         * Read what the client sent and run the complete command lines in it.
+         */
+        void read(ByteBuffer buffer) throws IOException {
+            buffer.clear();
+            int read = channel.read(buffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+            buffer.flip();
+            consume(buffer);
+            if (buffer.hasRemaining() && !ending) {
+                unread = ByteBuffer.allocate(buffer.remaining());
+                unread.put(buffer).flip();
+            }
+            write();
+        }
+
+        /**
+         * Run command lines from the input until it is used up, the game ends,
+         * or the output backlog reaches the high-water mark.
+         */
+        private void consume(ByteBuffer input) {
+            while (input.hasRemaining() && !ending && output.pending() < HIGH_WATER) {
+                byte b = input.get();
+                if (b == '\n') {
+                    if (discarding) {
+                        discarding = false;
+                        game.execute("");
+                    } else {
+                        int length = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                        ending = !game.execute(new String(line, 0, length, StandardCharsets.UTF_8));
+                    }
+                    lineLength = 0;
+                } else if (lineLength < MAX_LINE) {
+                    line[lineLength++] = b;
+                } else {
+                    discarding = true;
+                }
+            }
+        }
+
+        /**
+         * Send pending output, run held-back commands once the output has drained,
+         * and adjust which events the session waits for. Reading stops while the
+         * backlog is above the high-water mark and resumes at the low-water mark.
+         */
+        void write() throws IOException {
+            output.sendTo(channel);
+            if (unread != null && output.pending() <= LOW_WATER) {
+                consume(unread);
+                if (!unread.hasRemaining() || ending) {
+                    unread = null;
+                }
+                output.sendTo(channel);
+            }
+            if (closed) {
+                return;
+            }
+            int pending = output.pending();
+            if (pending == 0 && ending) {
+                close();
+                return;
+            }
+            int ops = 0;
+            if (pending > 0) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            boolean reading = (key.interestOps() & SelectionKey.OP_READ) != 0;
+            if (!ending && unread == null && (pending <= LOW_WATER || (reading && pending < HIGH_WATER))) {
+                ops |= SelectionKey.OP_READ;
+            }
+            key.interestOps(ops);
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing more to send anyway
+            }
+            sessionClosed();
+        }
+    }
+
+    /**
+     * Run a server.
+     * Usage: java BattleshipServer port (setup.txt | ROWSxCOLUMNS) [saveDirectory]
+     * A setup file gives every session the same layout; ROWSxCOLUMNS gives each a random standard fleet.
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println(Battleship.BAD_ARG_COUNT);
+            return;
+        }
+        Simulation.BoardFactory boards;
+        if (args[1].endsWith(".txt")) {
+            Battleship template = Battleship.readFromTxtFile(args[1]);
+            if (template == null) {
+                return;
+            }
+            boards = Simulation.fromTemplate(template.getBoard());
+        } else {
+            String[] dimensions = args[1].split("x");
+            boards = Simulation.randomFleet(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]),
+                    Simulation.STANDARD_FLEET);
+        }
+        Path saveDirectory = Paths.get(args.length > 2 ? args[2] : "saves");
+        Files.createDirectories(saveDirectory);
+        BattleshipServer server = new BattleshipServer(new InetSocketAddress(Integer.parseInt(args[0])), boards,
+                saveDirectory, 100000, Runtime.getRuntime().availableProcessors());
+        server.start();
+        System.out.println("Listening on " + server.getAddress());
+    }
+}
@@ -2,28 +2,174 @@ import java.io.PrintStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
  * The class to represent the grid of cells (squares).
  * A collection of ships is also kept so the Board
  * can be asked if the game is over.
+ *
+ * The grid is not stored as Cell objects. Ship occupancy and hit state are
+ * kept as packed bitmasks (one bit per square, row-major) and the ship on
+ * each square is kept as a small id into the board's ship table.
+ * Cell objects handed out by getCell are lightweight views of this storage.
  */
 public class Board implements Serializable {
 
-    private Cell[][] cells;
+    static final int SANK = 1 << 31;
+
+    /**
+     * Events in a full batch. A shot makes at most MAX_EVENTS_PER_SHOT of them.
+     */
+    private static final int EVENT_BATCH = 256;
+
+    static final int MAX_EVENTS_PER_SHOT = 4;
+
+    /**
+     * The largest ship id that fits in shipIds.
+     */
+    private static final int MAX_SHIPS = Short.MAX_VALUE;
+
+    private int rows;
+
+    private int columns;
+
+    /**
+     * One bit per square, set when a ship covers the square.
+     */
+    private long[] occupied;
+
+    /**
+     * One bit per square, set once the square has been hit.
+     */
+    private long[] hits;
+
+    /**
+     * One bit per square, set once the ship on the square has been sunk.
+     */
+    private long[] sunk;
+
+    /**
+     * Ship id per square: 0 for water, otherwise 1 + index into shipTable.
+     */
+    private short[] shipIds;
+
+    /**
+     * Every ship that has been put on a square of this board, in id order.
+     */
+    private Ship[] shipTable;
+
+    private int shipCount;
+
+    /**
+     * inFleet[id - 1] is set once the ship with that id has been added with addShip.
+     */
+    private boolean[] inFleet;
 
     private List<Ship> ships;
 
+    /**
+     * Set when occupied and shipIds are shared with a fork, so they must be
+     * copied before ships are placed or cleared.
+     */
+    private transient boolean sharedLayout;
+
+    /**
+     * How many shots have been taken back, so a display can tell that a
+     * square it drew has changed even though the shot count has not.
+     */
+    private transient int undoCount;
+
+    /**
+     * Ships taken off by clearFleet, for placeShip to put back.
+     */
+    private transient Ship[] spares;
+
+    private transient int spareCount;
+
+    /**
+     * Fleet status, kept up to date as ships are added and hit.
+     * Ships must be hit through the board for it to stay accurate.
+     * The counters that shots change, and the shot log, are package-private
+     * so that ConcurrentBoard can update them atomically.
+     */
+    int shipsRemaining;
+
+    /**
+     * shipsRemainingByLength[n] is the number of ships of length n still afloat.
+     */
+    int[] shipsRemainingByLength;
+
+    private int maxShipLength;
+
+    private int totalShipCells;
+
+    int hitShipCells;
+
+    /**
+     * Square index of every shot, in the order they were fired.
+     * The top bit is set for shots that sank a ship.
+     */
+    int[] shots;
+
+    int shotCount;
+
+    /**
+     * When set, the board reports no events, for games that are played
+     * by a program and for shots that are only being replayed.
+     */
+    private boolean headless;
+
+    /**
+     * Events are collected only while someone is listening.
+     */
+    private transient List<GameListener> listeners;
+
+    private transient GameEvents events;
+
+    /**
+     * Draws display and fullDisplay, kept for as long as they are given the same stream.
+     */
+    private transient BoardRenderer renderer;
+
+    private transient PrintStream rendererStream;
+
     public Board(int rows,int columns){
-        this.cells = new Cell[rows][columns];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-              this.cells[i][j] = new Cell(i,j);
-            }
+        this(rows, columns, true);
+    }
+
+    /**
+     * A board with another's fleet, fleet status and shot log, for copy and
+     * fork to fill in the squares of.
+     */
+    private Board(Board original) {
+        this.rows = original.rows;
+        this.columns = original.columns;
+        original.copyFleetTo(this);
+    }
+
+    /**
+     * @param dense false for subclasses that store their squares themselves,
+     *              in which case no per-square storage is allocated
+     */
+    Board(int rows, int columns, boolean dense) {
+        this.rows = rows;
+        this.columns = columns;
+        if (dense) {
+            int words = (rows * columns + 63) >>> 6;
+            this.occupied = new long[words];
+            this.hits = new long[words];
+            this.sunk = new long[words];
+            this.shipIds = new short[rows * columns];
         }
+        this.shipTable = new Ship[4];
+        this.inFleet = new boolean[4];
+        this.shipsRemainingByLength = new int[6];
         this.ships = new ArrayList<>();
+        this.shots = new int[8];
     }
 
     /**
@@ -34,25 +180,458 @@ public class Board implements Serializable {
      * @throws OutOfBoundsException if either coordinate is negative or too high
      */
     public Cell getCell(int row, int column) throws OutOfBoundsException {
-        try{
-        return cells[row][column];}
-        catch (IndexOutOfBoundsException e){
-            throw new OutOfBoundsException(row,column);
-        }
+        indexOf(row, column);
+        return new Cell(this, row, column);
     }
 
     public int getHeight(){
-        return cells[0].length;
+        return columns;
     }
 
     public int getWidth(){
-        return cells.length;
+        return rows;
     }
 
     public List<Ship> getShips() {
         return ships;
     }
 
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    /**
+     * Stop reporting events to listeners, for games that are played by a
+     * program rather than a person and for shots that are being replayed.
+     * @param headless true to silence the board
+     */
+    public void setHeadless(boolean headless) {
+        this.headless = headless;
+    }
+
+    /**
+     * Hit the square at the given location. If there is a ship there, it is hit too.
+     * This is fire for callers that want bad shots reported as exceptions, such as the console.
+     * @param row row number (0-based)
+     * @param column column number (0-based)
+     * @throws OutOfBoundsException if either coordinate is negative or too high
+     * @throws CellPlayedException if the square has already been hit
+     */
+    public void hit(int row, int column) throws OutOfBoundsException, CellPlayedException {
+        ShotResult result = fire(row, column);
+        if (result == ShotResult.OUT_OF_BOUNDS) {
+            throw new OutOfBoundsException(row, column);
+        }
+        if (result == ShotResult.ALREADY_PLAYED) {
+            throw new CellPlayedException(row, column);
+        }
+    }
+
+    /**
+     * Fire at the square at the given location. If there is a ship there, it is hit too.
+     * Bad shots are reported in the result instead of thrown, and nothing is allocated
+     * apart from the shot log growing now and then, so automated players can call this
+     * in a tight loop.
+     * @param row row number (0-based)
+     * @param column column number (0-based)
+     * @return what the shot did; ALREADY_PLAYED and OUT_OF_BOUNDS leave the board unchanged
+     */
+    public ShotResult fire(int row, int column) {
+        ShotResult result = resolve(row, column);
+        report(row, column, result);
+        return result;
+    }
+
+    /**
+     * Fire a salvo: several shots at once, resolved in order in one pass
+     * over the board. A square given more than once is only fired at the
+     * first time, and is REPEATED after that. Listeners hear every shot and its hit or miss, then every
+     * ship the salvo sank, then whether the fleet is all sunk, so sinkings
+     * are reported once for the whole salvo.
+     * @param rows row number of each shot
+     * @param columns column number of each shot
+     * @return what each shot did, and what the salvo did
+     * @throws IllegalArgumentException if rows and columns differ in length
+     */
+    public SalvoResult fireAll(int[] rows, int[] columns) {
+        if (rows.length != columns.length) {
+            throw new IllegalArgumentException("a salvo needs as many rows as columns");
+        }
+        return fireAll(rows, columns, rows.length, new SalvoResult());
+    }
+
+    /**
+     * Fire a salvo made of the first count entries of rows and columns, as
+     * fireAll does, reusing a SalvoResult from an earlier salvo.
+     * @param rows row number of each shot
+     * @param columns column number of each shot
+     * @param count how many shots are in the salvo
+     * @param result where the results go; its earlier contents are replaced
+     * @return result
+     */
+    public SalvoResult fireAll(int[] rows, int[] columns, int count, SalvoResult result) {
+        result.clear(count);
+        for (int i = 0; i < count; i++) {
+            ShotResult shot = resolve(rows[i], columns[i]);
+            if (shot == ShotResult.ALREADY_PLAYED && firedEarlier(rows, columns, i, result)) {
+                shot = ShotResult.REPEATED;
+            }
+            result.add(shot);
+        }
+        reportSalvo(rows, columns, result);
+        return result;
+    }
+
+    /**
+     * @return true if the square of shot i was fired at by an earlier shot of the salvo
+     */
+    private static boolean firedEarlier(int[] rows, int[] columns, int i, SalvoResult salvo) {
+        for (int j = i - 1; j >= 0; j--) {
+            if (rows[j] == rows[i] && columns[j] == columns[i] && salvo.get(j).isFired()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fire one shot, as fire does, without telling the listeners.
+     */
+    ShotResult resolve(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            return ShotResult.OUT_OF_BOUNDS;
+        }
+        int index = row * columns + column;
+        int word = index >>> 6;
+        long bit = 1L << index;
+        if ((hits[word] & bit) != 0) {
+            return ShotResult.ALREADY_PLAYED;
+        }
+        hits[word] |= bit;
+        if (shotCount == shots.length) {
+            shots = Arrays.copyOf(shots, shotCount * 2);
+        }
+        shots[shotCount++] = index;
+        ShotResult result = ShotResult.MISS;
+        if ((occupied[word] & bit) != 0) {
+            int id = shipIds[index];
+            if (!hitShip(id)) {
+                result = ShotResult.HIT;
+            } else {
+                shots[shotCount - 1] |= SANK;
+                markSunk(shipTable[id - 1], id);
+                result = sankLast(id) ? ShotResult.GAME_OVER : ShotResult.SUNK;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param id 1 + the index in the ship table of a ship that has just been sunk
+     * @return true if it was the last ship of the fleet afloat
+     */
+    boolean sankLast(int id) {
+        return inFleet[id - 1] && shipsRemaining == 0;
+    }
+
+    /**
+     * Hit the ship with the given id and bring the fleet status up to date.
+     * @param id 1 + the ship's index in the ship table
+     * @return true if this hit sank the ship
+     */
+    boolean hitShip(int id) {
+        Ship ship = shipTable[id - 1];
+        boolean wasSunk = ship.isSunk();
+        ship.hit();
+        if (inFleet[id - 1] && !wasSunk) {
+            hitShipCells++;
+        }
+        if (!ship.isSunk() || wasSunk) {
+            return false;
+        }
+        if (inFleet[id - 1]) {
+            shipsRemaining--;
+            if (ship.getLength() >= 0) {
+                shipsRemainingByLength[ship.getLength()]--;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Take back the last shot fired, as if it had never been fired, so a
+     * search can try a shot and return to where it was. The shot log is the
+     * undo stack: taking back a shot takes constant time, apart from
+     * unmarking the squares of a ship the shot sank. Listeners are not told.
+     * @return false if there was no shot to take back
+     */
+    public boolean undo() {
+        if (getShotCount() == 0) {
+            return false;
+        }
+        takeBackShot();
+        undoCount++;
+        return true;
+    }
+
+    /**
+     * Take back the last shot in the log, which there is.
+     */
+    void takeBackShot() {
+        int shot = shots[--shotCount];
+        int index = shot & ~SANK;
+        hits[index >>> 6] &= ~(1L << index);
+        if ((occupied[index >>> 6] & (1L << index)) != 0) {
+            int id = shipIds[index];
+            boolean sank = (shot & SANK) != 0;
+            if (sank) {
+                unmarkSunk(shipTable[id - 1], id);
+            }
+            unhitShip(id, sank);
+        }
+    }
+
+    /**
+     * Take back a hit on the ship with the given id and bring the fleet
+     * status back to what it was, undoing hitShip.
+     * @param id 1 + the ship's index in the ship table
+     * @param sank true if the hit being taken back sank the ship
+     */
+    void unhitShip(int id, boolean sank) {
+        Ship ship = shipTable[id - 1];
+        if (!sank && ship.isSunk()) {
+            // the hit landed on a ship that was already sunk, and changed nothing
+            return;
+        }
+        ship.unhit();
+        if (inFleet[id - 1]) {
+            hitShipCells--;
+            if (sank) {
+                shipsRemaining++;
+                if (ship.getLength() >= 0) {
+                    shipsRemainingByLength[ship.getLength()]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return how many shots have been taken back with undo
+     */
+    int getUndoCount() {
+        return undoCount;
+    }
+
+    /**
+     * Start telling a listener about every shot fired at this board.
+     * Events are delivered in batches on the thread that fires the shots.
+     * @param listener the listener
+     */
+    public void addListener(GameListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+            events = new GameEvents(this, EVENT_BATCH);
+        }
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * @param listener a listener added earlier
+     */
+    public void removeListener(GameListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Deliver the events collected so far, without waiting for the batch to fill.
+     */
+    public void flushEvents() {
+        if (events == null || events.size() == 0) {
+            return;
+        }
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onEvents(events);
+        }
+        events.clear();
+    }
+
+    /**
+     * Collect the events of one shot, delivering them if the batch fills or the game is over.
+     * Shots that were not fired are not heard.
+     */
+    void report(int row, int column, ShotResult result) {
+        if (!result.isFired() || events == null || headless || listeners.isEmpty()) {
+            return;
+        }
+        if (!events.hasRoom(MAX_EVENTS_PER_SHOT)) {
+            flushEvents();
+        }
+        events.add(GameEvents.Type.SHOT, row, column);
+        events.add(result.isHit() ? GameEvents.Type.HIT : GameEvents.Type.MISS, row, column);
+        if (result.isSunk()) {
+            events.add(GameEvents.Type.SHIP_SUNK, row, column);
+        }
+        if (result == ShotResult.GAME_OVER) {
+            events.add(GameEvents.Type.ALL_SUNK, row, column);
+            flushEvents();
+        }
+    }
+
+    /**
+     * Collect the events of a salvo: every fired shot first, then the sinkings.
+     */
+    void reportSalvo(int[] rows, int[] columns, SalvoResult salvo) {
+        if (events == null || headless || listeners.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < salvo.size(); i++) {
+            ShotResult result = salvo.get(i);
+            if (result.isFired()) {
+                if (!events.hasRoom(2)) {
+                    flushEvents();
+                }
+                events.add(GameEvents.Type.SHOT, rows[i], columns[i]);
+                events.add(result.isHit() ? GameEvents.Type.HIT : GameEvents.Type.MISS, rows[i], columns[i]);
+            }
+        }
+        for (int i = 0; i < salvo.size(); i++) {
+            if (salvo.get(i).isSunk()) {
+                if (!events.hasRoom(2)) {
+                    flushEvents();
+                }
+                events.add(GameEvents.Type.SHIP_SUNK, rows[i], columns[i]);
+                if (salvo.get(i) == ShotResult.GAME_OVER) {
+                    events.add(GameEvents.Type.ALL_SUNK, rows[i], columns[i]);
+                }
+            }
+        }
+        if (salvo.isGameOver()) {
+            flushEvents();
+        }
+    }
+
+    /**
+     * Mark the squares of a ship that has just been sunk.
+     */
+    void markSunk(Ship ship, int id) {
+        Ship.Orientation ort = ship.getOrientation();
+        for (int i = 0; i < ship.getLength(); i++) {
+            int row = ship.getRow() + i * ort.rDelta;
+            int column = ship.getColumn() + i * ort.cDelta;
+            if (row < rows && column < columns && shipIds[row * columns + column] == id) {
+                setSunk(row * columns + column);
+            }
+        }
+    }
+
+    /**
+     * Set one square's bit in the sunk bitmap, for markSunk.
+     * @param index row-major square index
+     */
+    void setSunk(int index) {
+        sunk[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Clear the sunk marks of a ship whose sinking is being taken back.
+     */
+    void unmarkSunk(Ship ship, int id) {
+        Ship.Orientation ort = ship.getOrientation();
+        for (int i = 0; i < ship.getLength(); i++) {
+            int row = ship.getRow() + i * ort.rDelta;
+            int column = ship.getColumn() + i * ort.cDelta;
+            if (row < rows && column < columns && shipIds[row * columns + column] == id) {
+                int index = row * columns + column;
+                sunk[index >>> 6] &= ~(1L << index);
+            }
+        }
+    }
+
+    /**
+     * @return how many shots have been fired at this board
+     */
+    public int getShotCount() {
+        return shotCount;
+    }
+
+    /**
+     * Look up a shot by its position in the order shots were fired.
+     * @param n 0 for the first shot
+     * @return the row-major index of the square that was shot
+     */
+    public int getShot(int n) {
+        if (n < 0 || n >= shotCount) {
+            throw new IndexOutOfBoundsException(n);
+        }
+        return shots[n] & ~SANK;
+    }
+
+    /**
+     * @param n 0 for the first shot
+     * @return true if that shot sank a ship
+     */
+    public boolean isSinkingShot(int n) {
+        if (n < 0 || n >= shotCount) {
+            throw new IndexOutOfBoundsException(n);
+        }
+        return (shots[n] & SANK) != 0;
+    }
+
+    /**
+     * Like getShot, for boards whose squares do not all have int indexes.
+     * @param n 0 for the first shot
+     * @return the row-major index of the square that was shot
+     */
+    long shotSquare(int n) {
+        return getShot(n);
+    }
+
+    /**
+     * Check whether the square at the given location has been hit.
+     * @param row row number (0-based)
+     * @param column column number (0-based)
+     * @return true if the square has been hit
+     * @throws OutOfBoundsException if either coordinate is negative or too high
+     */
+    public boolean isHit(int row, int column) throws OutOfBoundsException {
+        int index = indexOf(row, column);
+        return (hits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Fetch the ship on the square at the given location.
+     * @param row row number (0-based)
+     * @param column column number (0-based)
+     * @return the ship on that square, or null for water
+     * @throws OutOfBoundsException if either coordinate is negative or too high
+     */
+    public Ship getShip(int row, int column) throws OutOfBoundsException {
+        return shipAt(indexOf(row, column));
+    }
+
+    /**
+     * Place a ship on one square of the board.
+     * @see Cell#putShip(Ship)
+     * @param row row number (0-based)
+     * @param column column number (0-based)
+     * @param ship the ship that is to be on this square
+     * @throws OutOfBoundsException if either coordinate is negative or too high
+     * @throws OverlapException if there is already a ship here
+     */
+    public void putShip(int row, int column, Ship ship) throws OutOfBoundsException, OverlapException {
+        int index = indexOf(row, column);
+        int word = index >>> 6;
+        long bit = 1L << index;
+        if ((occupied[word] & bit) != 0) {
+            throw new OverlapException(row, column);
+        }
+        ownLayout();
+        occupied[word] |= bit;
+        shipIds[index] = (short) (idOf(ship) + 1);
+    }
+
     /**
      * Useful for debugging.
      * This is not the method that displays the board to the user.
@@ -61,7 +640,9 @@ public class Board implements Serializable {
     @Override
     public String toString() {
         return "Board{" +
-                "cells=" + Arrays.toString(cells) +
+                "rows=" + rows +
+                ", columns=" + columns +
+                ", ships=" + shipCount +
                 '}';
     }
 
@@ -73,57 +654,34 @@ public class Board implements Serializable {
      * @param printStream
      */
     public void display(PrintStream printStream){
-        try {
-            printStream.print('\n');
-            printStream.print("  ");
-            for(int k=0;k< getHeight();k++){
-                printStream.print(k+" ");
-            }
-            printStream.write('\n');
-            for (int i = 0; i < getWidth(); i++) {
-                for (int j = 0; j < getHeight(); j++) {
-                    if (j == 0) {
-                        printStream.print(i+" ");
-                    }
-                    printStream.print(getCell(i, j).displayHitStatus());
-                    printStream.print(' ');
-                }
-                printStream.print('\n');
-            }
-        }
-        catch (OutOfBoundsException e){
-
-        }
+        renderer(printStream).display(this);
     }
 
+    /**
+     * Display the board like display, but with the locations of unhit ship sections revealed.
+     * @see Cell#displayChar()
+     * @param printStream
+     */
     public void fullDisplay(PrintStream printStream){
-        try {
-            printStream.print('\n');
-            printStream.print("  ");
-            for(int k=0;k< getHeight();k++){
-                printStream.print(k+" ");
-            }
-            printStream.write('\n');
-            for (int i = 0; i < getWidth(); i++) {
-                for (int j = 0; j < getHeight(); j++) {
-                    if (j == 0) {
-                        printStream.print(i+" ");
-                    }
-                    printStream.print(getCell(i, j).displayChar());
-                    printStream.print(' ');
-                }
-                printStream.print('\n');
-            }
-        }
-        catch (OutOfBoundsException e){
+        renderer(printStream).fullDisplay(this);
+    }
 
+    /**
+     * @return a renderer for the stream, the one used last time if the stream is the same
+     */
+    private BoardRenderer renderer(PrintStream printStream) {
+        if (renderer == null || rendererStream != printStream) {
+            renderer = new BoardRenderer(printStream);
+            rendererStream = printStream;
         }
+        return renderer;
     }
 
 
     /**
      * Add a ship to the board. The only current reason that the
-     * board needs direct access to the ships is to poll them to see if they are all sunk and the game is over.
+     * board needs direct access to the ships is to keep track of the fleet,
+     * so it can be asked if the game is over.
      * @see Cell#putShip(Ship)
      * @param ship the as-yet un-added ship
      * @rit.pre This ship has already informed the Cells of the board
@@ -131,24 +689,435 @@ public class Board implements Serializable {
      */
 
     public  void addShip(Ship ship){
-         this.ships.add(ship);
+        this.ships.add(ship);
+        for (int i = shipCount - 1; i >= 0; i--) {
+            if (shipTable[i] == ship) {
+                inFleet[i] = true;
+                break;
+            }
+        }
+        count(ship);
+    }
+
+    /**
+     * Add a ship of the fleet to the fleet status.
+     */
+    private void count(Ship ship) {
+        totalShipCells += Math.max(ship.getLength(), 0);
+        maxShipLength = Math.max(maxShipLength, ship.getLength());
+        hitShipCells += ship.getNumOfHits();
+        if (!ship.isSunk()) {
+            shipsRemaining++;
+            if (ship.getLength() >= 0) {
+                if (ship.getLength() >= shipsRemainingByLength.length) {
+                    shipsRemainingByLength = Arrays.copyOf(shipsRemainingByLength, ship.getLength() + 1);
+                }
+                shipsRemainingByLength[ship.getLength()]++;
+            }
+        }
+    }
+
+    /**
+     * Take back every shot, leaving the fleet where it is, so the board can
+     * be played again. Listeners stay, but events not yet delivered are
+     * dropped. Nothing is allocated.
+     */
+    public void reset() {
+        Arrays.fill(hits, 0);
+        Arrays.fill(sunk, 0);
+        shotCount = 0;
+        repairFleet();
+    }
+
+    /**
+     * Repair every ship, count the fleet status again and drop the events
+     * not yet delivered, for reset once the squares are clear.
+     */
+    void repairFleet() {
+        for (int i = 0; i < shipCount; i++) {
+            shipTable[i].repair();
+        }
+        totalShipCells = 0;
+        maxShipLength = 0;
+        hitShipCells = 0;
+        shipsRemaining = 0;
+        Arrays.fill(shipsRemainingByLength, 0);
+        for (int i = 0; i < ships.size(); i++) {
+            count(ships.get(i));
+        }
+        if (events != null) {
+            events.clear();
+        }
+    }
+
+    /**
+     * Take every ship and every shot off the board, keeping its storage, so
+     * that a new fleet can be placed with placeShip. The Ship objects taken
+     * off are reused by placeShip, so do not hold on to them.
+     */
+    public void clearFleet() {
+        ownLayout();
+        Arrays.fill(occupied, 0);
+        Arrays.fill(hits, 0);
+        Arrays.fill(sunk, 0);
+        Arrays.fill(shipIds, (short) 0);
+        shotCount = 0;
+        removeFleet();
+    }
+
+    /**
+     * Empty the ship table and the fleet, keeping the ships for placeShip,
+     * for clearFleet once the squares are clear.
+     */
+    void removeFleet() {
+        if (spares == null || spares.length < spareCount + shipCount) {
+            spares = Arrays.copyOf(spares == null ? new Ship[0] : spares, spareCount + shipTable.length);
+        }
+        System.arraycopy(shipTable, 0, spares, spareCount, shipCount);
+        spareCount += shipCount;
+        Arrays.fill(shipTable, 0, shipCount, null);
+        Arrays.fill(inFleet, 0, shipCount, false);
+        shipCount = 0;
+        ships.clear();
+        totalShipCells = 0;
+        maxShipLength = 0;
+        hitShipCells = 0;
+        shipsRemaining = 0;
+        Arrays.fill(shipsRemainingByLength, 0);
+        if (events != null) {
+            events.clear();
+        }
+    }
+
+    /**
+     * Put a ship on the board and add it to the fleet, as new Ship does, but
+     * reusing a ship taken off by clearFleet if there is one. Once the board
+     * has held a fleet this big, this allocates nothing.
+     * @param row the uppermost row that the ship is on
+     * @param column the leftmost column that the ship is on
+     * @param ort the ship's orientation
+     * @param length how many squares the ship is on
+     * @return the ship
+     * @throws OverlapException if the ship would overlap another one
+     * @throws OutOfBoundsException if the ship would extend beyond the board
+     */
+    public Ship placeShip(int row, int column, Ship.Orientation ort, int length)
+            throws OverlapException, OutOfBoundsException {
+        for (int i = 0; i < length; i++) {
+            if (getShip(row + i * ort.rDelta, column + i * ort.cDelta) != null) {
+                throw new OverlapException(row + i * ort.rDelta, column + i * ort.cDelta);
+            }
+        }
+        Ship ship;
+        if (spareCount > 0) {
+            ship = spares[--spareCount];
+            spares[spareCount] = null;
+        } else {
+            ship = new Ship(length);
+        }
+        ship.reseat(row, column, ort, length);
+        for (int i = 0; i < length; i++) {
+            putShip(row + i * ort.rDelta, column + i * ort.cDelta, ship);
+        }
+        addShip(ship);
+        return ship;
+    }
+
+    /**
+     * Make an independent copy of this board and its ships, hits and shot log.
+     * @return the copy
+     */
+    public Board copy() {
+        Board copy = new Board(this);
+        copy.occupied = occupied.clone();
+        copy.hits = hits.clone();
+        copy.sunk = sunk.clone();
+        copy.shipIds = shipIds.clone();
+        return copy;
+    }
+
+    /**
+     * Make a copy of this board to try shots on, cheaper than copy. Shots
+     * never move ships, so the fork shares this board's ship layout until
+     * either board places or clears ships; only the hit bitmaps, the shot
+     * log, the ship table and the ships themselves are copied.
+     * @return the fork
+     */
+    public Board fork() {
+        Board fork = new Board(this);
+        shareSquares(fork);
+        return fork;
+    }
+
+    /**
+     * Give a fork this board's squares: the ship layout is shared until
+     * either board changes it, and the hit bitmaps are copied.
+     */
+    void shareSquares(Board fork) {
+        fork.occupied = occupied;
+        fork.shipIds = shipIds;
+        fork.sharedLayout = true;
+        sharedLayout = true;
+        fork.hits = hits.clone();
+        fork.sunk = sunk.clone();
+    }
+
+    /**
+     * Stop sharing the ship layout with forks, before changing it.
+     */
+    private void ownLayout() {
+        if (sharedLayout) {
+            occupied = occupied.clone();
+            shipIds = shipIds.clone();
+            sharedLayout = false;
+        }
     }
 
+    /**
+     * Copy everything but the squares: the ships, the fleet status and the shot log.
+     */
+    void copyFleetTo(Board copy) {
+        copy.shipTable = new Ship[shipTable.length];
+        for (int i = 0; i < shipCount; i++) {
+            copy.shipTable[i] = shipTable[i].copy();
+        }
+        copy.shipCount = shipCount;
+        copy.inFleet = inFleet.clone();
+        copy.ships = new ArrayList<>(ships.size());
+        Map<Ship, Ship> copies = null;
+        for (int i = 0; i < ships.size(); i++) {
+            Ship ship = ships.get(i);
+            if (i < shipCount && shipTable[i] == ship) {
+                // ships are normally added in the order they were put on squares
+                copy.ships.add(copy.shipTable[i]);
+                continue;
+            }
+            if (copies == null) {
+                copies = new IdentityHashMap<>();
+                for (int j = 0; j < shipCount; j++) {
+                    copies.put(shipTable[j], copy.shipTable[j]);
+                }
+            }
+            copy.ships.add(copies.computeIfAbsent(ship, Ship::copy));
+        }
+        copy.shipsRemaining = shipsRemaining;
+        copy.shipsRemainingByLength = shipsRemainingByLength.clone();
+        copy.maxShipLength = maxShipLength;
+        copy.totalShipCells = totalShipCells;
+        copy.hitShipCells = hitShipCells;
+        copy.shots = shots.clone();
+        copy.shotCount = shotCount;
+        copy.headless = headless;
+    }
+
+    /**
+     * Check whether the game is over. This takes constant time.
+     * @return true if every ship has been sunk
+     */
     public boolean allSunk(){
-        boolean allSunk = true;
-        for (Ship ship:this.ships) {
-            if(ship.isSunk()==false){
-                allSunk = false;
-                break;
+        return shipsRemaining == 0;
+    }
+
+    /**
+     * Each square stores the id of its ship in a short, so a board can only
+     * tell so many ships apart. Placing one more throws IllegalStateException.
+     * @return the most ships that can be put on this board
+     */
+    public int getMaxShips() {
+        return MAX_SHIPS;
+    }
+
+    /**
+     * @return how many ships are still afloat
+     */
+    public int getShipsRemaining() {
+        return shipsRemaining;
+    }
+
+    /**
+     * @param length a ship length
+     * @return how many ships of that length are still afloat
+     */
+    public int getShipsRemaining(int length) {
+        return length >= 0 && length < shipsRemainingByLength.length ? shipsRemainingByLength[length] : 0;
+    }
+
+    /**
+     * @return the length of the longest ship in the fleet, afloat or not
+     */
+    public int getMaxShipLength() {
+        return maxShipLength;
+    }
+
+    /**
+     * @return the number of squares covered by the fleet
+     */
+    public int getTotalShipCells() {
+        return totalShipCells;
+    }
+
+    /**
+     * @return the number of fleet squares that have been hit
+     */
+    public int getHitShipCells() {
+        return hitShipCells;
+    }
+
+    /**
+     * The character shown to the player for a square.
+     * @see Cell#displayHitStatus()
+     * @param index row-major square index
+     * @return one of the Cell display characters
+     */
+    char displayHitStatus(int index) {
+        if ((hits[index >>> 6] & (1L << index)) == 0) {
+            return Cell.PRISTINE_WATER;
+        }
+        if ((sunk[index >>> 6] & (1L << index)) != 0) {
+            return Cell.SUNK_SHIP_SECTION;
+        }
+        return (occupied[index >>> 6] & (1L << index)) != 0 ? Cell.HIT_SHIP_SECTION : Cell.HIT_WATER;
+    }
+
+    /**
+     * The character shown for a square when ship locations are revealed.
+     * @see Cell#displayChar()
+     * @param index row-major square index
+     * @return one of the Cell display characters
+     */
+    char displayChar(int index) {
+        if ((hits[index >>> 6] & (1L << index)) == 0) {
+            return shipAt(index) != null ? Cell.HIDDEN_SHIP_SECTION : Cell.PRISTINE_WATER;
+        }
+        return displayHitStatus(index);
+    }
+
+    /**
+     * @see #displayHitStatus(int)
+     */
+    char displayHitStatusAt(int row, int column) {
+        return displayHitStatus(row * columns + column);
+    }
+
+    /**
+     * @see #displayChar(int)
+     */
+    char displayCharAt(int row, int column) {
+        return displayChar(row * columns + column);
+    }
+
+    /**
+     * The first row drawn by display and update. Only part of a sparse board is drawn.
+     */
+    int viewportRow() {
+        return 0;
+    }
+
+    int viewportColumn() {
+        return 0;
+    }
+
+    int viewportRows() {
+        return rows;
+    }
+
+    int viewportColumns() {
+        return columns;
+    }
+
+    /**
+     * Convert a location to its row-major square index.
+     * @param row row number (0-based)
+     * @param column column number (0-based)
+     * @return the square index
+     * @throws OutOfBoundsException if either coordinate is negative or too high
+     */
+    int indexOf(int row, int column) throws OutOfBoundsException {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new OutOfBoundsException(row, column);
+        }
+        return row * columns + column;
+    }
+
+    /**
+     * The ship occupancy bitmap, one bit per square in row-major order. Not a copy.
+     */
+    long[] occupancyWords() {
+        return occupied;
+    }
+
+    /**
+     * The hit bitmap, one bit per square in row-major order. Not a copy.
+     */
+    long[] hitWords() {
+        return hits;
+    }
+
+    /**
+     * The sunk bitmap, one bit per square in row-major order. Not a copy.
+     */
+    long[] sunkWords() {
+        return sunk;
+    }
+
+    /**
+     * @return 0 for water, otherwise 1 + the index in the ship table of the ship on the square
+     */
+    int shipIdAt(int index) {
+        return shipIds[index];
+    }
+
+    /**
+     * @param id 1 + the ship's index in the ship table
+     * @return true if the ship has been added to the fleet with addShip
+     */
+    boolean isInFleet(int id) {
+        return inFleet[id - 1];
+    }
+
+    Ship shipAt(int index) {
+        return shipById(shipIds[index]);
+    }
+
+    Ship shipAt(int row, int column) {
+        return shipAt(row * columns + column);
+    }
+
+    /**
+     * @param id 0 for water, otherwise 1 + the ship's index in the ship table
+     */
+    Ship shipById(int id) {
+        return id == 0 ? null : shipTable[id - 1];
+    }
+
+    /**
+     * Look up the index of a ship in the ship table, registering it if this is the
+     * first square it is put on. Ships are placed one at a time, so the search from
+     * the end normally stops at once.
+     * @throws IllegalStateException if the ship is new and the board already holds getMaxShips ships
+     */
+    int idOf(Ship ship) {
+        for (int i = shipCount - 1; i >= 0; i--) {
+            if (shipTable[i] == ship) {
+                return i;
             }
         }
-        return allSunk;
+        if (shipCount == getMaxShips()) {
+            throw new IllegalStateException("a board can hold at most " + getMaxShips() + " ships");
+        }
+        if (shipCount == shipTable.length) {
+            shipTable = Arrays.copyOf(shipTable, shipCount * 2);
+            inFleet = Arrays.copyOf(inFleet, shipCount * 2);
+        }
+        shipTable[shipCount] = ship;
+        return shipCount++;
     }
 
     @Override
     public int hashCode() {
         int result = Objects.hash(ships);
-        result = 31 * result + Arrays.hashCode(cells);
+        result = 31 * result + Arrays.hashCode(hits);
+        result = 31 * result + Arrays.hashCode(shipIds);
         return result;
     }
 }
@@ -0,0 +1,524 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The saved-game file format.
+ *
+ * A save file is a fixed header followed by the ship table and two bitmaps,
+ * all big-endian, closed by a CRC32 of everything before it:
+ * <pre>
+ *   int   magic 'BSHP'
+ *   short format version
+ *   short flags (0, or SPARSE)
+ *   int   rows, int columns
+ *   int   number of ships, then for each ship:
+ *           int row, int column, byte orientation (0 horizontal, 1 vertical), int length
+ *   int   number of 64-bit words in each bitmap
+ *   long* ship occupancy, one bit per square in row-major order
+ *   long* hit squares, same layout
+ *   int   CRC32
+ * </pre>
+ * A 10x10 game with the standard fleet takes 125 bytes.
+ *
+ * A SparseBoard is saved with the SPARSE flag, and instead of the bitmaps
+ * has the number of shots followed by each shot's int row and int column,
+ * in the order they were fired.
+ *
+ * Files written by the old format, Java serialization of the whole Board,
+ * can still be read and converted with this class's main method. The old
+ * Board, Cell and Ship classes are gone, so their objects are read into
+ * stand-ins with the same fields and serialVersionUIDs, and the fleet and
+ * hits are put on a new board from those.
+ */
+public class BoardFile {
+
+    public static final int MAGIC = 0x42534850;
+
+    public static final short VERSION = 1;
+
+    /**
+     * Flag for a sparse board, saved as its shots instead of bitmaps.
+     */
+    public static final short SPARSE = 1;
+
+    /**
+     * The first two bytes of a Java serialization stream.
+     */
+    private static final short SERIALIZATION_MAGIC = (short) 0xACED;
+
+    private static final int HEADER_SIZE = 20;
+
+    private static final int SHIP_SIZE = 13;
+
+    private BoardFile() {
+    }
+
+    /**
+     * Write a board to a file, replacing it if it exists.
+     * @param board the board to save
+     * @param path where to save it
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Board board, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(board, channel);
+        }
+    }
+
+    /**
+     * Write a board to a channel.
+     * @param board the board to save
+     * @param channel where to write it
+     * @throws IOException if the channel cannot be written
+     */
+    public static void write(Board board, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = encode(board);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Encode a board in the save format.
+     * @param board the board to save
+     * @return a buffer positioned at the start of the encoded board
+     */
+    public static ByteBuffer encode(Board board) {
+        if (board instanceof SparseBoard) {
+            return encodeSparse((SparseBoard) board);
+        }
+        List<Ship> ships = board.getShips();
+        long[] occupied = board.occupancyWords();
+        long[] hits = board.hitWords();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + ships.size() * SHIP_SIZE
+                + 4 + 2 * 8 * occupied.length + 4);
+        putHeader(buffer, board, (short) 0);
+        buffer.putInt(occupied.length);
+        for (long word : occupied) {
+            buffer.putLong(word);
+        }
+        for (long word : hits) {
+            buffer.putLong(word);
+        }
+        return finish(buffer);
+    }
+
+    private static ByteBuffer encodeSparse(SparseBoard board) {
+        int shots = board.getShotCount();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + board.getShips().size() * SHIP_SIZE
+                + 4 + 8 * shots + 4);
+        putHeader(buffer, board, SPARSE);
+        buffer.putInt(shots);
+        long columns = board.getHeight();
+        for (int n = 0; n < shots; n++) {
+            long square = board.shotSquare(n);
+            buffer.putInt((int) (square / columns));
+            buffer.putInt((int) (square % columns));
+        }
+        return finish(buffer);
+    }
+
+    private static void putHeader(ByteBuffer buffer, Board board, short flags) {
+        List<Ship> ships = board.getShips();
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort(flags);
+        buffer.putInt(board.getWidth());
+        buffer.putInt(board.getHeight());
+        buffer.putInt(ships.size());
+        for (Ship ship : ships) {
+            buffer.putInt(ship.getRow());
+            buffer.putInt(ship.getColumn());
+            buffer.put((byte) ship.getOrientation().ordinal());
+            buffer.putInt(ship.getLength());
+        }
+    }
+
+    /**
+     * Append the CRC32 of everything written so far and flip the buffer for reading.
+     */
+    private static ByteBuffer finish(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Read a board from a save file in either the current or the old format.
+     * @param path the save file
+     * @return the board, with its ships placed and its hits applied
+     * @throws IOException if the file cannot be read or is not a valid save file
+     */
+    public static Board read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Save file too large: " + path);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            buffer.flip();
+            if (buffer.remaining() >= 2 && buffer.getShort(0) == SERIALIZATION_MAGIC) {
+                return readLegacy(path);
+            }
+            return decode(buffer);
+        }
+    }
+
+    /**
+     * Read a board written with write(Board, WritableByteChannel).
+     * @param channel the channel to read the board from
+     * @return the board
+     * @throws IOException if the channel cannot be read or does not hold a valid board
+     */
+    public static Board read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = readFully(channel, HEADER_SIZE);
+        int ships = header.getInt(16);
+        if (ships < 0 || ships > (Integer.MAX_VALUE - 4) / SHIP_SIZE) {
+            throw new IOException("Corrupt save file: bad ship count");
+        }
+        ByteBuffer table = readFully(channel, ships * SHIP_SIZE + 4);
+        int words = table.getInt(ships * SHIP_SIZE);
+        if (words < 0 || words > (Integer.MAX_VALUE - 4) / 16) {
+            throw new IOException("Corrupt save file: bad bitmap size");
+        }
+        // a sparse board has 8-byte shots where an ordinary one has two 8-byte bitmap words
+        boolean sparse = (header.getShort(6) & SPARSE) != 0;
+        ByteBuffer rest = readFully(channel, (sparse ? 8 : 16) * words + 4);
+        ByteBuffer all = ByteBuffer.allocate(header.capacity() + table.capacity() + rest.capacity());
+        all.put(header).put(table).put(rest).flip();
+        return decode(all);
+    }
+
+    /**
+     * Decode a board in the save format.
+     * @param buffer the encoded board, from its position to its limit
+     * @return the board
+     * @throws IOException if the buffer does not hold a valid board
+     */
+    public static Board decode(ByteBuffer buffer) throws IOException {
+        try {
+            int start = buffer.position();
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a Battleship save file");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported save file version " + version);
+            }
+            short flags = buffer.getShort();
+            if ((flags & ~SPARSE) != 0) {
+                throw new IOException("Unsupported save file flags " + flags);
+            }
+            boolean sparse = flags == SPARSE;
+            int rows = buffer.getInt();
+            int columns = buffer.getInt();
+            int shipCount = buffer.getInt();
+            if (rows < 0 || columns < 0 || shipCount < 0
+                    || (!sparse && (long) rows * columns > Integer.MAX_VALUE)) {
+                throw new IOException("Corrupt save file: bad dimensions");
+            }
+            long expected = (long) shipCount * SHIP_SIZE + 4
+                    + (sparse ? 0 : 16 * (((long) rows * columns + 63) >>> 6)) + 4;
+            if (expected > buffer.remaining()) {
+                throw new IOException("Corrupt save file: truncated");
+            }
+            Board board = sparse ? new SparseBoard(rows, columns) : new Board(rows, columns);
+            if (shipCount > board.getMaxShips()) {
+                throw new IOException("Corrupt save file: too many ships");
+            }
+            Ship.Orientation[] orientations = Ship.Orientation.values();
+            for (int i = 0; i < shipCount; i++) {
+                int row = buffer.getInt();
+                int column = buffer.getInt();
+                int orientation = buffer.get();
+                int length = buffer.getInt();
+                if (orientation < 0 || orientation >= orientations.length) {
+                    throw new IOException("Corrupt save file: bad ship orientation");
+                }
+                new Ship(board, row, column, orientations[orientation], length);
+            }
+            if (sparse) {
+                return decodeShots(buffer, start, board);
+            }
+            long[] occupied = board.occupancyWords();
+            int words = buffer.getInt();
+            if (words != occupied.length) {
+                throw new IOException("Corrupt save file: bitmap size does not match dimensions");
+            }
+            for (int i = 0; i < words; i++) {
+                if (buffer.getLong() != occupied[i]) {
+                    throw new IOException("Corrupt save file: ship bitmap does not match ship table");
+                }
+            }
+            long[] hits = new long[words];
+            for (int i = 0; i < words; i++) {
+                hits[i] = buffer.getLong();
+            }
+            int end = buffer.position();
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().position(start).limit(end));
+            if (buffer.getInt() != (int) crc.getValue()) {
+                throw new IOException("Corrupt save file: checksum mismatch");
+            }
+            boolean headless = board.isHeadless();
+            board.setHeadless(true);
+            for (int i = 0; i < words; i++) {
+                for (long word = hits[i]; word != 0; word &= word - 1) {
+                    int index = i * 64 + Long.numberOfTrailingZeros(word);
+                    if (index >= rows * columns) {
+                        throw new IOException("Corrupt save file: hit outside the board");
+                    }
+                    board.hit(index / columns, index % columns);
+                }
+            }
+            board.setHeadless(headless);
+            return board;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Corrupt save file: truncated", e);
+        } catch (BattleshipException e) {
+            throw new IOException("Corrupt save file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decode the shot list of a sparse board and fire the shots.
+     */
+    private static Board decodeShots(ByteBuffer buffer, int start, Board board) throws IOException, BattleshipException {
+        int shots = buffer.getInt();
+        if (shots < 0 || 8L * shots + 4 > buffer.remaining()) {
+            throw new IOException("Corrupt save file: truncated");
+        }
+        int first = buffer.position();
+        buffer.position(first + 8 * shots);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(start).limit(buffer.position()));
+        if (buffer.getInt() != (int) crc.getValue()) {
+            throw new IOException("Corrupt save file: checksum mismatch");
+        }
+        boolean headless = board.isHeadless();
+        board.setHeadless(true);
+        for (int n = 0; n < shots; n++) {
+            board.hit(buffer.getInt(first + 8 * n), buffer.getInt(first + 8 * n + 4));
+        }
+        board.setHeadless(headless);
+        return board;
+    }
+
+    /**
+     * Read a board saved with Java serialization by earlier versions of the game.
+     * @param path the old save file
+     * @return the board
+     * @throws IOException if the file cannot be read or deserialized
+     */
+    public static Board readLegacy(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path);
+             ObjectInputStream objectInputStream = new LegacyInputStream(in)) {
+            return fromLegacy((LegacyBoard) objectInputStream.readObject());
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Not a Battleship save file: " + path, e);
+        }
+    }
+
+    /**
+     * Place an old board's fleet on a new board and fire at the squares it had hit.
+     */
+    private static Board fromLegacy(LegacyBoard legacy) throws IOException {
+        LegacyCell[][] cells = legacy.cells;
+        if (cells == null || legacy.ships == null || cells.length == 0 || cells[0] == null) {
+            throw new IOException("Corrupt save file: no squares");
+        }
+        int rows = cells.length;
+        int columns = cells[0].length;
+        // the old ships did not know where they were, so find the first two squares of each
+        Map<LegacyShip, int[]> places = new IdentityHashMap<>();
+        for (int row = 0; row < rows; row++) {
+            if (cells[row] == null || cells[row].length != columns) {
+                throw new IOException("Corrupt save file: ragged rows");
+            }
+            for (int column = 0; column < columns; column++) {
+                LegacyShip ship = cells[row][column] == null ? null : cells[row][column].ship;
+                if (ship != null) {
+                    int[] place = places.get(ship);
+                    if (place == null) {
+                        places.put(ship, new int[] {row, column, 0});
+                    } else if (place[2] == 0) {
+                        place[2] = place[0] == row ? 1 : 2;
+                    }
+                }
+            }
+        }
+        Board board = new Board(rows, columns);
+        try {
+            for (LegacyShip ship : legacy.ships) {
+                int[] place = places.remove(ship);
+                if (place == null) {
+                    new Ship(board, 0, 0, Ship.Orientation.HORIZONTAL, ship.length);
+                } else {
+                    new Ship(board, place[0], place[1],
+                            place[2] == 2 ? Ship.Orientation.VERTICAL : Ship.Orientation.HORIZONTAL, ship.length);
+                }
+            }
+            if (!places.isEmpty()) {
+                throw new IOException("Corrupt save file: ship not in the fleet");
+            }
+            board.setHeadless(true);
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    LegacyCell cell = cells[row][column];
+                    if ((cell != null && cell.ship != null) != (board.getShip(row, column) != null)) {
+                        throw new IOException("Corrupt save file: ship squares do not line up");
+                    }
+                    if (cell != null && cell.isHit) {
+                        board.hit(row, column);
+                    }
+                }
+            }
+            board.setHeadless(false);
+        } catch (BattleshipException e) {
+            throw new IOException("Corrupt save file: " + e.getMessage(), e);
+        }
+        return board;
+    }
+
+    /**
+     * Rewrite an old serialized save file in the current format.
+     * @param legacy the old save file
+     * @param converted where to write the new one
+     * @throws IOException if either file cannot be used
+     */
+    public static void convert(Path legacy, Path converted) throws IOException {
+        write(read(legacy), converted);
+    }
+
+    private static ByteBuffer readFully(ReadableByteChannel channel, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Corrupt save file: truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads a board saved by the old format into the Legacy stand-ins, and
+     * refuses to make objects of any other class.
+     */
+    private static final class LegacyInputStream extends ObjectInputStream {
+
+        private static final Map<String, Class<?>> STAND_INS = Map.of(
+                "Board", LegacyBoard.class,
+                "Cell", LegacyCell.class,
+                "Ship", LegacyShip.class,
+                "[LCell;", LegacyCell[].class,
+                "[[LCell;", LegacyCell[][].class);
+
+        LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            ObjectStreamClass saved = super.readClassDescriptor();
+            Class<?> standIn = STAND_INS.get(saved.getName());
+            if (standIn == null) {
+                return saved;
+            }
+            ObjectStreamClass local = ObjectStreamClass.lookup(standIn);
+            if (!standIn.isArray() && saved.getSerialVersionUID() != local.getSerialVersionUID()) {
+                throw new InvalidClassException(saved.getName(), "not saved by an earlier version of the game");
+            }
+            return local;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            Class<?> type = super.resolveClass(desc);
+            if (!STAND_INS.containsValue(type) && type != ArrayList.class) {
+                throw new InvalidClassException(desc.getName(), "not part of a saved game");
+            }
+            return type;
+        }
+    }
+
+    /**
+     * The old Board: a grid of Cell objects and the fleet.
+     */
+    private static final class LegacyBoard implements Serializable {
+
+        private static final long serialVersionUID = 2651225434818736535L;
+
+        private LegacyCell[][] cells;
+
+        private List<LegacyShip> ships;
+    }
+
+    /**
+     * The old Cell, which held its own hit flag and ship.
+     */
+    private static final class LegacyCell implements Serializable {
+
+        private static final long serialVersionUID = -5787503883032328378L;
+
+        private int row;
+
+        private int column;
+
+        private boolean isHit;
+
+        private LegacyShip ship;
+    }
+
+    /**
+     * The old Ship, which knew only its length and hits.
+     */
+    private static final class LegacyShip implements Serializable {
+
+        private static final long serialVersionUID = -1761116248506928112L;
+
+        private int length;
+
+        private int numOfHits;
+    }
+
+    /**
+     * Convert old save files.
+     * Usage: java BoardFile old.bin new.bin
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println(Battleship.BAD_ARG_COUNT);
+            return;
+        }
+        try {
+            convert(Paths.get(args[0]), Paths.get(args[1]));
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
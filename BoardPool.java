@@ -0,0 +1,37 @@
+import java.util.SplittableRandom;
+
+/**
+ * Keeps one board per thread and deals every new game onto it, so a
+ * simulation worker plays millions of games without making a board for
+ * each one.
+ *
+ * A board handed out by next belongs to the calling thread until that
+ * thread calls next again, when it is cleared and used for the next game.
+ * Copy it, or take what is needed from it, before then.
+ */
+public class BoardPool {
+
+    private final Simulation.BoardFactory factory;
+
+    private final ThreadLocal<Board> boards = new ThreadLocal<>();
+
+    /**
+     * @param factory makes the boards and deals games onto them
+     */
+    public BoardPool(Simulation.BoardFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Get the board for this thread's next game.
+     * @param random randomness for the new board
+     * @return this thread's board, as the factory's newBoard would have made it
+     * @throws BattleshipException if the board cannot be made
+     */
+    public Board next(SplittableRandom random) throws BattleshipException {
+        Board board = boards.get();
+        board = board == null ? factory.newBoard(random) : factory.reuseBoard(board, random);
+        boards.set(board);
+        return board;
+    }
+}
@@ -0,0 +1,232 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Draws boards into a reusable byte buffer and writes each frame to the
+ * output stream in a single call.
+ *
+ * display and fullDisplay produce exactly the text of Board#display and
+ * Board#fullDisplay. update draws the board once and afterwards uses ANSI
+ * cursor positioning to redraw only the squares changed by shots since the
+ * previous frame, so its cost follows the number of changes rather than the
+ * size of the board.
+ *
+ * Only the board's viewport is drawn, which is the whole of an ordinary
+ * board and a window onto a sparse one.
+ */
+public class BoardRenderer {
+
+    private static final byte[] CLEAR_SCREEN = {27, '[', 'H', 27, '[', '2', 'J'};
+
+    private static final byte[] CLEAR_BELOW = {27, '[', 'J'};
+
+    /**
+     * Grid lines start on this screen line: a blank line and the column numbers come first.
+     */
+    private static final int FIRST_ROW_LINE = 3;
+
+    private final OutputStream out;
+
+    private final byte[][] glyphs = new byte[128][];
+
+    private final byte[] hitShipGlyph;
+
+    private byte[] buffer = new byte[1024];
+
+    private int length;
+
+    private Board renderedBoard;
+
+    private int renderedShots;
+
+    private int renderedUndos;
+
+    private long renderedViewport;
+
+    public BoardRenderer(OutputStream out) {
+        this(out, Charset.defaultCharset());
+    }
+
+    /**
+     * @param out where frames are written
+     * @param charset how the display characters are encoded
+     */
+    public BoardRenderer(OutputStream out, Charset charset) {
+        this.out = out;
+        for (char c : new char[]{Cell.SUNK_SHIP_SECTION, Cell.HIT_WATER, Cell.PRISTINE_WATER, Cell.HIDDEN_SHIP_SECTION}) {
+            glyphs[c] = String.valueOf(c).getBytes(charset);
+        }
+        hitShipGlyph = String.valueOf(Cell.HIT_SHIP_SECTION).getBytes(charset);
+    }
+
+    /**
+     * Write the board as the player sees it, like Board#display.
+     * @param board the board to draw
+     */
+    public void display(Board board) {
+        length = 0;
+        frame(board, false);
+        flush();
+        renderedBoard = null;
+    }
+
+    /**
+     * Write the board with every ship revealed, like Board#fullDisplay.
+     * @param board the board to draw
+     */
+    public void fullDisplay(Board board) {
+        length = 0;
+        frame(board, true);
+        flush();
+        renderedBoard = null;
+    }
+
+    /**
+     * Bring the screen up to date with the board.
+     * The first call, and any call after the screen was drawn over by something
+     * else, clears the terminal and draws the whole board at the top. Later calls
+     * only redraw the squares that shots have changed since, then leave the cursor
+     * on the line under the board with the rest of the screen cleared.
+     * @param board the board to draw
+     */
+    public void update(Board board) {
+        length = 0;
+        int shots = board.getShotCount();
+        long viewport = (long) board.viewportRow() << 32 | board.viewportColumn() & 0xFFFFFFFFL;
+        if (board != renderedBoard || shots < renderedShots || board.getUndoCount() != renderedUndos
+                || viewport != renderedViewport) {
+            append(CLEAR_SCREEN);
+            frame(board, false);
+        } else {
+            long columns = board.getHeight();
+            for (int n = renderedShots; n < shots; n++) {
+                long index = board.shotSquare(n);
+                int shotRow = (int) (index / columns);
+                int shotColumn = (int) (index % columns);
+                if (board.isSinkingShot(n)) {
+                    Ship ship = board.shipAt(shotRow, shotColumn);
+                    for (int i = 0; i < ship.getLength(); i++) {
+                        square(board, ship.getRow() + i * ship.getOrientation().rDelta,
+                                ship.getColumn() + i * ship.getOrientation().cDelta);
+                    }
+                } else {
+                    square(board, shotRow, shotColumn);
+                }
+            }
+            moveTo(FIRST_ROW_LINE + board.viewportRows(), 1);
+            append(CLEAR_BELOW);
+        }
+        flush();
+        renderedBoard = board;
+        renderedShots = shots;
+        renderedUndos = board.getUndoCount();
+        renderedViewport = viewport;
+    }
+
+    /**
+     * Forget what is on the screen, so the next update draws the whole board.
+     */
+    public void invalidate() {
+        renderedBoard = null;
+    }
+
+    private void frame(Board board, boolean reveal) {
+        int top = board.viewportRow();
+        int left = board.viewportColumn();
+        int rows = board.viewportRows();
+        int columns = board.viewportColumns();
+        append((byte) '\n');
+        append((byte) ' ');
+        append((byte) ' ');
+        for (int k = 0; k < columns; k++) {
+            number(left + k);
+            append((byte) ' ');
+        }
+        append((byte) '\n');
+        for (int i = top; i < top + rows; i++) {
+            for (int j = left; j < left + columns; j++) {
+                if (j == left) {
+                    number(i);
+                    append((byte) ' ');
+                }
+                glyph(reveal ? board.displayCharAt(i, j) : board.displayHitStatusAt(i, j));
+                append((byte) ' ');
+            }
+            append((byte) '\n');
+        }
+    }
+
+    /**
+     * Redraw one square in place, if it is in the viewport.
+     */
+    private void square(Board board, int row, int column) {
+        int line = row - board.viewportRow();
+        int offset = column - board.viewportColumn();
+        if (line < 0 || line >= board.viewportRows() || offset < 0 || offset >= board.viewportColumns()) {
+            return;
+        }
+        moveTo(FIRST_ROW_LINE + line, digits(row) + 2 + 2 * offset);
+        glyph(board.displayHitStatusAt(row, column));
+    }
+
+    private void moveTo(int line, int column) {
+        append((byte) 27);
+        append((byte) '[');
+        number(line);
+        append((byte) ';');
+        number(column);
+        append((byte) 'H');
+    }
+
+    private void glyph(char c) {
+        append(c == Cell.HIT_SHIP_SECTION ? hitShipGlyph : glyphs[c]);
+    }
+
+    private void number(int value) {
+        int digits = digits(value);
+        ensureCapacity(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    private static int digits(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    private void append(byte b) {
+        ensureCapacity(1);
+        buffer[length++] = b;
+    }
+
+    private void append(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    private void flush() {
+        try {
+            out.write(buffer, 0, length);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -5,17 +5,18 @@ import java.io.Serializable;
  * A single spot on the Battleship game board.
  * A cell knows if there is a ship on it, and it remember
  * if it has been hit.
+ *
+ * The state itself lives in the Board's packed storage; a Cell is a view
+ * of one square of that storage.
  */
 public class Cell implements Serializable {
 
+    private Board board;
+
     private int row;
 
     private int column;
 
-    private boolean isHit;
-
-    private Ship ship;
-
     /**
      * Character to display for a ship that has been entirely sunk
      */
@@ -43,11 +44,10 @@ public class Cell implements Serializable {
      */
     public static final char HIDDEN_SHIP_SECTION = 'S';
 
-    public Cell(int row, int column) {
+    public Cell(Board board, int row, int column) {
+        this.board = board;
         this.row = row;
         this.column = column;
-        this.isHit = false;
-        this.ship = null;
     }
 
     public int getColumn() {
@@ -59,11 +59,11 @@ public class Cell implements Serializable {
     }
 
     public Ship getShip(){
-        return ship;
+        return board.shipAt(row, column);
     }
 
     public boolean isHit() {
-        return isHit;
+        return board.displayHitStatusAt(row, column) != PRISTINE_WATER;
     }
 
     /**
@@ -75,10 +75,10 @@ public class Cell implements Serializable {
      * @throws OverlapException if there is already a ship here.
      */
     public void putShip(Ship ship) throws OverlapException {
-        if (this.ship == null) {
-            this.ship = ship;
-        } else {
-            throw new OverlapException(row,column);
+        try {
+            board.putShip(row, column, ship);
+        } catch (OutOfBoundsException e) {
+            throw new IllegalStateException(e);
         }
     }
 
@@ -88,14 +88,10 @@ public class Cell implements Serializable {
      * @throws CellPlayedException
      */
     public void hit() throws  CellPlayedException{
-        if(!isHit){
-            this.isHit = true;
-            if(this.ship!=null){
-                this.ship.hit();
-            }
-        }
-        else {
-            throw new CellPlayedException(row,column);
+        try {
+            board.hit(row, column);
+        } catch (OutOfBoundsException e) {
+            throw new IllegalStateException(e);
         }
     }
 
@@ -104,20 +100,7 @@ public class Cell implements Serializable {
      * @return
      */
     public char displayHitStatus() {
-        if (this.isHit == false) {
-            return PRISTINE_WATER;
-        } else if (this.ship != null && this.isHit == true) {
-            if(this.ship.isSunk()){
-                return SUNK_SHIP_SECTION;
-            }
-            else{
-                return HIT_SHIP_SECTION;
-            }
-
-        }
-        else {
-            return HIT_WATER;
-        }
+        return board.displayHitStatusAt(row, column);
     }
 
     /**
@@ -125,26 +108,7 @@ public class Cell implements Serializable {
      * @return
      */
     public char displayChar() {
-        if(this.isHit == false){
-            if(this.ship !=null){
-                return HIDDEN_SHIP_SECTION;
-            }
-            else{
-                return PRISTINE_WATER;
-            }
-        }
-        else{
-            if(this.ship!=null){
-                if(this.ship.isSunk() == true){
-                return SUNK_SHIP_SECTION;}
-                else{
-                    return HIT_SHIP_SECTION;
-                }
-            }
-            else{
-                return HIT_WATER;
-            }
-        }
+        return board.displayCharAt(row, column);
     }
 
 }
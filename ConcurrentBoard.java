@@ -0,0 +1,395 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A board that many threads can shoot at at once, for cooperative searches
+ * by several players.
+ *
+ * A shot claims its square by atomically setting the square's bit in the
+ * hit bitmap, so however many threads fire at a square, exactly one of them
+ * hits it and the rest are told it was already played. Ships count their
+ * hits with compare-and-set, so exactly one hit sinks each ship, and the
+ * board's own fleet status counters are updated with atomic operations, so
+ * exactly one shot is told that it ended the game. No locks are taken: a
+ * shot costs a few atomic operations on the words for its own square and
+ * ship, plus one on the shared shot counter and, for hits, on the fleet
+ * status.
+ *
+ * Listeners are not handed batches: each shot's events are delivered on
+ * their own, on the thread that fired it, before fire returns. A salvo's
+ * events are delivered together, before fireAll returns. Listeners
+ * may therefore be called from several threads at once, and must be safe
+ * for that.
+ *
+ * The fleet must be placed before any shots are fired, from one thread,
+ * and shots may only be taken back with undo, or the board forked, reset
+ * or cleared, while no thread is firing; those work as they do on Board.
+ * The shot log records every shot, but a shot may appear in getShotCount()
+ * a moment before it can be read with getShot(), so read the log only once
+ * the shooting threads have stopped.
+ */
+public class ConcurrentBoard extends Board {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private static final VarHandle SHIPS_REMAINING;
+
+    private static final VarHandle HIT_SHIP_CELLS;
+
+    private static final VarHandle SHOT_COUNT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            SHIPS_REMAINING = lookup.findVarHandle(Board.class, "shipsRemaining", int.class);
+            HIT_SHIP_CELLS = lookup.findVarHandle(Board.class, "hitShipCells", int.class);
+            SHOT_COUNT = lookup.findVarHandle(Board.class, "shotCount", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private transient volatile List<GameListener> listeners;
+
+    /**
+     * Each shooting thread's events for the shot or salvo it is reporting.
+     */
+    private transient ThreadLocal<GameEvents> shotEvents;
+
+    /**
+     * @param rows number of rows
+     * @param columns number of columns
+     */
+    public ConcurrentBoard(int rows, int columns) {
+        super(rows, columns);
+        // the shot log cannot grow while threads write to it, so make room for one shot per square
+        shots = new int[rows * columns];
+    }
+
+    /**
+     * A fork of original, sharing its ship layout.
+     */
+    private ConcurrentBoard(ConcurrentBoard original) {
+        super(original.getWidth(), original.getHeight(), false);
+        original.copyFleetTo(this);
+        original.shareSquares(this);
+    }
+
+    /**
+     * Fire at a square. Safe to call from any number of threads at once.
+     * @param row row number (0-based)
+     * @param column column number (0-based)
+     * @return what the shot did; of all the shots at one square, exactly one is not ALREADY_PLAYED
+     */
+    @Override
+    public ShotResult fire(int row, int column) {
+        ShotResult result = resolve(row, column);
+        if (result.isFired()) {
+            List<GameListener> listeners = this.listeners;
+            if (listeners != null && !isHeadless()) {
+                deliver(listeners, row, column, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fire one shot, as fire does, without telling the listeners.
+     */
+    @Override
+    ShotResult resolve(int row, int column) {
+        int rows = getWidth();
+        int columns = getHeight();
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            return ShotResult.OUT_OF_BOUNDS;
+        }
+        int index = row * columns + column;
+        long bit = 1L << index;
+        long before = (long) WORDS.getAndBitwiseOr(hitWords(), index >>> 6, bit);
+        if ((before & bit) != 0) {
+            return ShotResult.ALREADY_PLAYED;
+        }
+        ShotResult result = ShotResult.MISS;
+        int id = shipIdAt(index);
+        if (id != 0) {
+            Ship ship = shipById(id);
+            boolean inFleet = isInFleet(id);
+            int hits = ship.hitAtomically();
+            if (hits != 0 && inFleet) {
+                HIT_SHIP_CELLS.getAndAdd(this, 1);
+            }
+            if (hits != ship.getLength()) {
+                result = ShotResult.HIT;
+            } else {
+                markSunk(ship, id);
+                result = ShotResult.SUNK;
+                if (inFleet) {
+                    if (ship.getLength() >= 0) {
+                        INTS.getAndAdd(shipsRemainingByLength, ship.getLength(), -1);
+                    }
+                    if ((int) SHIPS_REMAINING.getAndAdd(this, -1) == 1) {
+                        result = ShotResult.GAME_OVER;
+                    }
+                }
+            }
+        }
+        INTS.setRelease(shots, (int) SHOT_COUNT.getAndAdd(this, 1), result.isSunk() ? index | SANK : index);
+        return result;
+    }
+
+    /**
+     * Hand the events of one shot to every listener, on the thread that fired it.
+     */
+    private void deliver(List<GameListener> listeners, int row, int column, ShotResult result) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        GameEvents events = shotEvents.get();
+        events.clear();
+        events.add(GameEvents.Type.SHOT, row, column);
+        events.add(result.isHit() ? GameEvents.Type.HIT : GameEvents.Type.MISS, row, column);
+        if (result.isSunk()) {
+            events.add(GameEvents.Type.SHIP_SUNK, row, column);
+        }
+        if (result == ShotResult.GAME_OVER) {
+            events.add(GameEvents.Type.ALL_SUNK, row, column);
+        }
+        tell(listeners, events);
+    }
+
+    /**
+     * Hand the events of a salvo to every listener in one batch, on the
+     * thread that fired it. A thread's batch grows to fit the largest salvo
+     * it has fired.
+     */
+    @Override
+    void reportSalvo(int[] rows, int[] columns, SalvoResult salvo) {
+        List<GameListener> listeners = this.listeners;
+        if (listeners == null || listeners.isEmpty() || isHeadless() || salvo.getFired() == 0) {
+            return;
+        }
+        GameEvents events = shotEvents.get();
+        events.clear();
+        int size = 2 * salvo.getFired() + salvo.getSunk() + (salvo.isGameOver() ? 1 : 0);
+        if (!events.hasRoom(size)) {
+            events = new GameEvents(this, size);
+            shotEvents.set(events);
+        }
+        for (int i = 0; i < salvo.size(); i++) {
+            ShotResult result = salvo.get(i);
+            if (result.isFired()) {
+                events.add(GameEvents.Type.SHOT, rows[i], columns[i]);
+                events.add(result.isHit() ? GameEvents.Type.HIT : GameEvents.Type.MISS, rows[i], columns[i]);
+            }
+        }
+        for (int i = 0; i < salvo.size(); i++) {
+            if (salvo.get(i).isSunk()) {
+                events.add(GameEvents.Type.SHIP_SUNK, rows[i], columns[i]);
+                if (salvo.get(i) == ShotResult.GAME_OVER) {
+                    events.add(GameEvents.Type.ALL_SUNK, rows[i], columns[i]);
+                }
+            }
+        }
+        tell(listeners, events);
+    }
+
+    private static void tell(List<GameListener> listeners, GameEvents events) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onEvents(events);
+        }
+        events.clear();
+    }
+
+    /**
+     * Make a copy of this board to try shots on, sharing its ship layout as
+     * Board.fork does; the hit bitmaps, the shot log and the ships are
+     * copied. Only fork a board that is not being shot at.
+     * @return the fork
+     */
+    @Override
+    public ConcurrentBoard fork() {
+        return new ConcurrentBoard(this);
+    }
+
+    /**
+     * Start telling a listener about every shot fired at this board.
+     * Each shot's events are delivered as soon as it is fired, on the thread
+     * that fired it, so the listener may be called from many threads at once.
+     * A salvo is delivered in one batch, its shots first and then its
+     * sinkings, as Board reports it.
+     * @param listener the listener
+     */
+    @Override
+    public synchronized void addListener(GameListener listener) {
+        Objects.requireNonNull(listener);
+        if (listeners == null) {
+            shotEvents = ThreadLocal.withInitial(() -> new GameEvents(this, MAX_EVENTS_PER_SHOT));
+            listeners = new CopyOnWriteArrayList<>();
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener a listener added earlier
+     */
+    @Override
+    public synchronized void removeListener(GameListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Squares of other ships share words of the sunk bitmap, and may be sunk at the same time.
+     */
+    @Override
+    void setSunk(int index) {
+        WORDS.getAndBitwiseOr(sunkWords(), index >>> 6, 1L << index);
+    }
+
+    @Override
+    public boolean isHit(int row, int column) throws OutOfBoundsException {
+        int index = indexOf(row, column);
+        return ((long) WORDS.getVolatile(hitWords(), index >>> 6) & (1L << index)) != 0;
+    }
+
+    @Override
+    public int getShotCount() {
+        return (int) SHOT_COUNT.getVolatile(this);
+    }
+
+    @Override
+    public int getShot(int n) {
+        if (n < 0 || n >= getShotCount()) {
+            throw new IndexOutOfBoundsException(n);
+        }
+        return (int) INTS.getAcquire(shots, n) & ~SANK;
+    }
+
+    @Override
+    public boolean isSinkingShot(int n) {
+        if (n < 0 || n >= getShotCount()) {
+            throw new IndexOutOfBoundsException(n);
+        }
+        return ((int) INTS.getAcquire(shots, n) & SANK) != 0;
+    }
+
+    @Override
+    public boolean allSunk() {
+        return getShipsRemaining() == 0;
+    }
+
+    @Override
+    public int getShipsRemaining() {
+        return (int) SHIPS_REMAINING.getVolatile(this);
+    }
+
+    @Override
+    public int getShipsRemaining(int length) {
+        int[] byLength = shipsRemainingByLength;
+        return length >= 0 && length < byLength.length ? (int) INTS.getVolatile(byLength, length) : 0;
+    }
+
+    @Override
+    public int getHitShipCells() {
+        return (int) HIT_SHIP_CELLS.getVolatile(this);
+    }
+
+    /**
+     * Copy the board by placing the same fleet on a new one and firing the
+     * logged shots in order. Only copy a board that is not being shot at.
+     * @return the copy
+     */
+    @Override
+    public ConcurrentBoard copy() {
+        ConcurrentBoard copy = new ConcurrentBoard(getWidth(), getHeight());
+        copy.setHeadless(true);
+        try {
+            for (Ship ship : getShips()) {
+                new Ship(copy, ship.getRow(), ship.getColumn(), ship.getOrientation(), ship.getLength());
+            }
+        } catch (BattleshipException e) {
+            throw new IllegalStateException("the fleet no longer fits", e);
+        }
+        int columns = getHeight();
+        for (int n = 0; n < getShotCount(); n++) {
+            int index = getShot(n);
+            copy.fire(index / columns, index % columns);
+        }
+        copy.setHeadless(isHeadless());
+        return copy;
+    }
+
+    /**
+     * Check that every square is claimed once and every sink is reported once
+     * while threads fight over the same squares, and measure shots per second.
+     * Usage: java ConcurrentBoard [threads] [size]
+     * Every thread fires at every square of a size x size board, in its own order.
+     * @param args
+     */
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 512;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ConcurrentBoard board = new ConcurrentBoard(size, size);
+            board.setHeadless(true);
+            int ships = 0;
+            for (int row = 0; row < size; row += 4) {
+                int length = 2 + row / 4 % 4;
+                for (int column = 0; column + length <= size; column += length + 1) {
+                    new Ship(board, row, column, Ship.Orientation.HORIZONTAL, length);
+                    ships++;
+                }
+            }
+            LongAdder fired = new LongAdder();
+            LongAdder sinks = new LongAdder();
+            LongAdder endings = new LongAdder();
+            Thread[] shooters = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                SplittableRandom random = new SplittableRandom(t);
+                shooters[t] = new Thread(() -> {
+                    int[] order = new int[size * size];
+                    for (int i = 0; i < order.length; i++) {
+                        int j = random.nextInt(i + 1);
+                        order[i] = order[j];
+                        order[j] = i;
+                    }
+                    for (int square : order) {
+                        ShotResult result = board.fire(square / size, square % size);
+                        if (result.isFired()) {
+                            fired.increment();
+                        }
+                        if (result.isSunk()) {
+                            sinks.increment();
+                        }
+                        if (result == ShotResult.GAME_OVER) {
+                            endings.increment();
+                        }
+                    }
+                });
+            }
+            long start = System.nanoTime();
+            for (Thread shooter : shooters) {
+                shooter.start();
+            }
+            for (Thread shooter : shooters) {
+                shooter.join();
+            }
+            long nanos = System.nanoTime() - start;
+            boolean correct = fired.sum() == (long) size * size && sinks.sum() == ships && endings.sum() == 1
+                    && board.allSunk() && board.getShotCount() == size * size;
+            System.out.println(threads + " threads: " + (long) ((double) threads * size * size * 1e9 / nanos)
+                    + " shots/sec, " + (correct ? "every square claimed once, every sink reported once" : "WRONG: fired "
+                    + fired.sum() + " sinks " + sinks.sum() + "/" + ships + " game overs " + endings.sum()));
+        }
+    }
+}
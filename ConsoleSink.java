@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes game output on its own thread, so the game never waits for the
+ * console or a log file.
+ *
+ * The game's side appends bytes to a buffer and moves on; a daemon writer
+ * thread swaps that buffer for an empty one and writes everything that
+ * piled up in one call. Text written to stream() and lines made from board
+ * events go through the same buffer, so they come out in the order they
+ * were produced. If the writer falls more than MAX_PENDING bytes behind,
+ * the game does wait, so memory stays bounded.
+ *
+ * As a GameListener the sink is an event log, with one line per event:
+ * "shot 3 4", "hit 3 4", "miss 3 4", "sunk 3 4" and "all sunk".
+ */
+public class ConsoleSink implements GameListener, AutoCloseable {
+
+    public static final int MAX_PENDING = 1 << 20;
+
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] SPACE = {' '};
+
+    private static final byte[][] EVENT_NAMES = {
+            "shot ".getBytes(StandardCharsets.US_ASCII), "hit ".getBytes(StandardCharsets.US_ASCII),
+            "miss ".getBytes(StandardCharsets.US_ASCII), "sunk ".getBytes(StandardCharsets.US_ASCII),
+            "all sunk".getBytes(StandardCharsets.US_ASCII)
+    };
+
+    private final OutputStream target;
+
+    private final Thread writer;
+
+    private final OutputStream stream = new OutputStream() {
+        @Override
+        public void write(int b) {
+            synchronized (ConsoleSink.this) {
+                reserve(1);
+                pending[pendingLength++] = (byte) b;
+                queued++;
+                ConsoleSink.this.notifyAll();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            synchronized (ConsoleSink.this) {
+                append(b, off, len);
+                ConsoleSink.this.notifyAll();
+            }
+        }
+    };
+
+    private byte[] pending = new byte[8192];
+
+    private int pendingLength;
+
+    private byte[] writing = new byte[8192];
+
+    /**
+     * Bytes handed to the sink and bytes written out, so drain knows when it is done.
+     */
+    private long queued;
+
+    private long written;
+
+    private boolean closed;
+
+    private volatile IOException failure;
+
+    /**
+     * @param target where the output goes; it is closed with the sink
+     */
+    public ConsoleSink(OutputStream target) {
+        this.target = target;
+        this.writer = new Thread(this::write, "battleship-console");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return a stream whose bytes are written out in order with the event lines
+     */
+    public OutputStream stream() {
+        return stream;
+    }
+
+    @Override
+    public synchronized void onEvents(GameEvents events) {
+        for (int i = 0; i < events.size(); i++) {
+            GameEvents.Type type = events.getType(i);
+            byte[] name = EVENT_NAMES[type.ordinal()];
+            append(name, 0, name.length);
+            if (type != GameEvents.Type.ALL_SUNK) {
+                appendNumber(events.getRow(i));
+                append(SPACE, 0, 1);
+                appendNumber(events.getColumn(i));
+            }
+            append(NEWLINE, 0, NEWLINE.length);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Wait until everything handed to the sink so far has been written out.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void drain() throws InterruptedException {
+        long target = queued;
+        while (written < target && failure == null && writer.isAlive()) {
+            wait();
+        }
+    }
+
+    /**
+     * Write out what is left, stop the writer thread and close the target.
+     * @throws IOException if any output could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            target.close();
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private void write() {
+        while (true) {
+            int length;
+            synchronized (this) {
+                while (pendingLength == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pendingLength == 0) {
+                    return;
+                }
+                byte[] full = pending;
+                pending = writing.length >= full.length ? writing : new byte[full.length];
+                writing = full;
+                length = pendingLength;
+                pendingLength = 0;
+                notifyAll();
+            }
+            try {
+                if (failure == null) {
+                    target.write(writing, 0, length);
+                    target.flush();
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            synchronized (this) {
+                written += length;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Copy bytes into the pending buffer. Caller holds the lock.
+     */
+    private void append(byte[] b, int off, int len) {
+        reserve(len);
+        System.arraycopy(b, off, pending, pendingLength, len);
+        pendingLength += len;
+        queued += len;
+    }
+
+    /**
+     * Write a row or column number, which is never negative. Caller holds the lock.
+     */
+    private void appendNumber(int n) {
+        int digits = 1;
+        for (int rest = n / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        reserve(digits);
+        for (int i = pendingLength + digits - 1; i >= pendingLength; i--) {
+            pending[i] = (byte) ('0' + n % 10);
+            n /= 10;
+        }
+        pendingLength += digits;
+        queued += digits;
+    }
+
+    /**
+     * Make room for len more bytes, first waiting for the writer if it is too far behind.
+     * Caller holds the lock.
+     */
+    private void reserve(int len) {
+        while (pendingLength > 0 && pendingLength + len > MAX_PENDING && failure == null && writer.isAlive()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (pendingLength + len > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pendingLength + len, pending.length * 2));
+        }
+    }
+}
@@ -0,0 +1,393 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Checks whole directory trees of setup files at once, spread over every
+ * core with a fork-join pool.
+ *
+ * Every .txt file under a directory is parsed and its fleet placed on a
+ * board, exactly as the game would load it, but instead of printing a
+ * message and giving up, each file gets a Result saying whether it loaded
+ * and, if not, what was wrong and on which line. Boards that load can also
+ * be saved in the binary format, in a second directory tree that mirrors
+ * the first, so later runs can read them with BoardFile.
+ *
+ * The directory is walked lazily and files are handed to the pool in
+ * batches, with only a few batches waiting at a time, so a corpus of any
+ * size is checked in bounded memory. Results are passed to a consumer as
+ * each batch finishes, one batch at a time, in no particular order.
+ */
+public class CorpusValidator {
+
+    /**
+     * Files checked by one task.
+     */
+    public static final int BATCH = 64;
+
+    public enum Status {
+        /**
+         * The file loads.
+         */
+        VALID,
+        /**
+         * A line of the file could not be parsed.
+         */
+        MALFORMED,
+        /**
+         * The board is too big to display, and sparse boards were not allowed.
+         */
+        TOO_BIG,
+        /**
+         * A ship overlaps another.
+         */
+        OVERLAP,
+        /**
+         * A ship reaches past the edge of the board.
+         */
+        OUT_OF_BOUNDS,
+        /**
+         * The file could not be read.
+         */
+        UNREADABLE,
+        /**
+         * The file loads, but its binary copy could not be written.
+         */
+        NOT_SAVED
+    }
+
+    /**
+     * What happened to one file.
+     */
+    public static class Result {
+
+        private final Path path;
+        private final Status status;
+        private final String message;
+        private final int line;
+        private final int column;
+        private final int rows;
+        private final int columns;
+        private final int ships;
+        private final long bytes;
+
+        Result(Path path, Status status, String message, int line, int column, int rows, int columns, int ships,
+               long bytes) {
+            this.path = path;
+            this.status = status;
+            this.message = message;
+            this.line = line;
+            this.column = column;
+            this.rows = rows;
+            this.columns = columns;
+            this.ships = ships;
+            this.bytes = bytes;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return what was wrong, or null for a valid file
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * @return the line the problem was found on, starting at 1, or 0 if it was not on a line
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * @return the column of a MALFORMED line where parsing stopped, starting at 1, or 0
+         */
+        public int getColumn() {
+            return column;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getColumns() {
+            return columns;
+        }
+
+        /**
+         * @return the ships placed before the file loaded or failed
+         */
+        public int getShips() {
+            return ships;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return path + ": " + (message == null ? status.toString() : message);
+        }
+    }
+
+    /**
+     * How many files ended up with each status, and how fast they were checked.
+     */
+    public static class Summary {
+
+        private final LongAdder[] counts = new LongAdder[Status.values().length];
+
+        private final LongAdder bytes = new LongAdder();
+
+        private long elapsedNanos;
+
+        Summary() {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        void record(Result result) {
+            counts[result.status.ordinal()].increment();
+            bytes.add(result.bytes);
+        }
+
+        public long getCount(Status status) {
+            return counts[status.ordinal()].sum();
+        }
+
+        public long getFiles() {
+            long files = 0;
+            for (LongAdder count : counts) {
+                files += count.sum();
+            }
+            return files;
+        }
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getFilesPerSecond() {
+            return elapsedNanos == 0 ? 0 : getFiles() * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder(String.format("files=%d  files/sec=%.0f  MB/sec=%.1f",
+                    getFiles(), getFilesPerSecond(), elapsedNanos == 0 ? 0 : getBytes() * 1e3 / elapsedNanos));
+            for (Status status : Status.values()) {
+                s.append("  ").append(status.name().toLowerCase(Locale.ROOT)).append('=').append(getCount(status));
+            }
+            return s.toString();
+        }
+    }
+
+    private final boolean sparse;
+
+    private final Path binaries;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param sparse true to load boards bigger than the display onto sparse boards instead of rejecting them
+     * @param binaries where to save the boards that load, or null not to save them
+     */
+    public CorpusValidator(boolean sparse, Path binaries) {
+        this(sparse, binaries, ForkJoinPool.commonPool());
+    }
+
+    public CorpusValidator(boolean sparse, Path binaries, ForkJoinPool pool) {
+        this.sparse = sparse;
+        this.binaries = binaries;
+        this.pool = pool;
+    }
+
+    /**
+     * Check every .txt file in a directory tree.
+     * @param root the directory
+     * @param results receives every file's result, from one thread at a time
+     * @return the counts and throughput
+     * @throws IOException if the directory tree cannot be walked
+     */
+    public Summary validate(Path root, Consumer<? super Result> results) throws IOException {
+        long start = System.nanoTime();
+        Summary summary = new Summary();
+        int maxWaiting = pool.getParallelism() * 2;
+        Semaphore waiting = new Semaphore(maxWaiting);
+        RuntimeException[] failure = new RuntimeException[1];
+        try (Stream<Path> files = Files.walk(root)) {
+            Iterator<Path> paths = files
+                    .filter(path -> path.getFileName().toString().endsWith(".txt") && Files.isRegularFile(path))
+                    .iterator();
+            while (paths.hasNext()) {
+                List<Path> batch = new ArrayList<>(BATCH);
+                while (batch.size() < BATCH && paths.hasNext()) {
+                    batch.add(paths.next());
+                }
+                waiting.acquireUninterruptibly();
+                pool.execute(() -> {
+                    try {
+                        List<Result> checked = new ArrayList<>(batch.size());
+                        for (Path path : batch) {
+                            checked.add(validate(path, binaries == null ? null : binaryPath(root, path)));
+                        }
+                        synchronized (summary) {
+                            for (Result result : checked) {
+                                summary.record(result);
+                                results.accept(result);
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        synchronized (summary) {
+                            if (failure[0] == null) {
+                                failure[0] = e;
+                            }
+                        }
+                    } finally {
+                        waiting.release();
+                    }
+                });
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            waiting.acquireUninterruptibly(maxWaiting);
+        }
+        synchronized (summary) {
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    /**
+     * Check one setup file on this thread.
+     * @param path the setup file
+     * @return what happened to it; with a binary directory, the copy is saved next to the file itself
+     */
+    public Result validate(Path path) {
+        return validate(path, binaries == null ? null : binaryPath(path.toAbsolutePath().getParent(), path));
+    }
+
+    private Path binaryPath(Path root, Path file) {
+        String name = root.relativize(file).toString();
+        return binaries.resolve(name.substring(0, name.length() - ".txt".length()) + ".bin");
+    }
+
+    private Result validate(Path path, Path binary) {
+        Checker checker = new Checker();
+        long bytes = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            bytes = channel.size();
+            SetupParser.parse(channel, checker);
+        } catch (SetupFormatException e) {
+            return checker.result(path, Status.MALFORMED, e.getMessage(), e.line, e.column, bytes);
+        } catch (OverlapException e) {
+            return checker.result(path, Status.OVERLAP, e.getMessage(), checker.line, 0, bytes);
+        } catch (OutOfBoundsException e) {
+            return checker.result(path, Status.OUT_OF_BOUNDS, e.getMessage(), checker.line, 0, bytes);
+        } catch (BattleshipException e) {
+            return checker.result(path, Status.TOO_BIG, e.getMessage(), 1, 0, bytes);
+        } catch (IOException e) {
+            return checker.result(path, Status.UNREADABLE, String.valueOf(e), 0, 0, bytes);
+        }
+        if (binary != null) {
+            try {
+                Files.createDirectories(binary.toAbsolutePath().getParent());
+                BoardFile.write(checker.board, binary);
+            } catch (IOException e) {
+                return checker.result(path, Status.NOT_SAVED, "cannot save " + binary + ": " + e, 0, 0, bytes);
+            }
+        }
+        return checker.result(path, Status.VALID, null, 0, 0, bytes);
+    }
+
+    /**
+     * Places a file's fleet as Battleship does, remembering which line it got to.
+     */
+    private class Checker implements SetupParser.Handler {
+
+        private Board board;
+
+        private int line = 1;
+
+        private int ships;
+
+        @Override
+        public void dimensions(int rows, int columns) throws BattleshipException {
+            if (sparse) {
+                board = new SparseBoard(rows, columns);
+                return;
+            }
+            if (rows > Battleship.MAX_DIM || columns > Battleship.MAX_DIM) {
+                throw new BattleshipException(Battleship.DIM_TOO_BIG);
+            }
+            board = new Board(rows, columns);
+        }
+
+        @Override
+        public void ship(int row, int column, Ship.Orientation orientation, int length) throws BattleshipException {
+            line++;
+            new Ship(board, row, column, orientation, length);
+            ships++;
+        }
+
+        Result result(Path path, Status status, String message, int line, int column, long bytes) {
+            return new Result(path, status, message, line, column, board == null ? 0 : board.getWidth(),
+                    board == null ? 0 : board.getHeight(), ships, bytes);
+        }
+    }
+
+    /**
+     * Check a directory tree of setup files and print the files that do not load.
+     * Usage: java CorpusValidator directory [binary-directory]
+     * With -Dbattleship.sparse=true, boards too big to display are loaded as sparse boards.
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: java CorpusValidator directory [binary-directory]");
+            return;
+        }
+        CorpusValidator validator = new CorpusValidator(Boolean.getBoolean("battleship.sparse"),
+                args.length > 1 ? Paths.get(args[1]) : null);
+        try {
+            Summary summary = validator.validate(Paths.get(args[0]), result -> {
+                if (result.getStatus() != Status.VALID) {
+                    System.out.println(result);
+                }
+            });
+            System.out.println(summary);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,310 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A strong computer player based on a probability-density map.
+ *
+ * For every unsunk ship length it keeps, per square, how many placements of a
+ * ship of that length could cover the square without crossing a miss or a
+ * sunk ship. While hunting it shoots the unplayed square covered by the most
+ * placements of the ships still afloat. Once a ship has been hit but not sunk
+ * it switches to targeting, where only placements through the hit squares
+ * count, and placements through more hits count for much more.
+ *
+ * The map is updated incrementally: a miss or a sunk square only removes the
+ * placements that pass through it, which touches at most a few dozen squares,
+ * and a sunk ship removes its length's contribution in one pass.
+ */
+public class DensityStrategy implements ShootingStrategy {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte PENDING = 1;
+    private static final byte MISS = 2;
+    private static final byte HIT = 3;
+    private static final byte SUNK = 4;
+
+    private Board board;
+
+    private SplittableRandom random;
+
+    private int rows;
+
+    private int columns;
+
+    private int squares;
+
+    private int maxLength;
+
+    private byte[] state = new byte[0];
+
+    /**
+     * remaining[n] is the number of ships of length n still afloat.
+     */
+    private int[] remaining = new int[0];
+
+    /**
+     * cover[n * squares + s] is the number of open placements of a length-n ship covering square s.
+     */
+    private int[] cover = new int[0];
+
+    /**
+     * density[s] is the sum over ship lengths of remaining[n] * cover[n * squares + s].
+     */
+    private long[] density = new long[0];
+
+    /**
+     * Hit squares of ships that have not been sunk yet.
+     */
+    private int[] openHits = new int[0];
+
+    private int openHitCount;
+
+    private long[] target = new long[0];
+
+    private int[] touched = new int[0];
+
+    private int touchedCount;
+
+    @Override
+    public String getName() {
+        return "density";
+    }
+
+    @Override
+    public void newGame(Board board, SplittableRandom random) {
+        this.board = board;
+        this.random = random;
+        rows = board.getWidth();
+        columns = board.getHeight();
+        maxLength = Math.max(board.getMaxShipLength(), 0);
+        if (state.length != rows * columns || remaining.length != maxLength + 1) {
+            squares = rows * columns;
+            state = new byte[squares];
+            remaining = new int[maxLength + 1];
+            cover = new int[(maxLength + 1) * squares];
+            density = new long[squares];
+            openHits = new int[squares];
+            target = new long[squares];
+            touched = new int[squares];
+        } else {
+            Arrays.fill(state, UNKNOWN);
+            Arrays.fill(cover, 0);
+            Arrays.fill(density, 0);
+        }
+        openHitCount = 0;
+        for (int length = 1; length <= maxLength; length++) {
+            remaining[length] = board.getShipsRemaining(length);
+            if (remaining[length] == 0) {
+                continue;
+            }
+            int base = length * squares;
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column + length <= columns; column++) {
+                    for (int i = 0; i < length; i++) {
+                        cover[base + row * columns + column + i]++;
+                    }
+                }
+            }
+            for (int row = 0; row + length <= rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    for (int i = 0; i < length; i++) {
+                        cover[base + (row + i) * columns + column]++;
+                    }
+                }
+            }
+            for (int s = 0; s < squares; s++) {
+                density[s] += (long) remaining[length] * cover[base + s];
+            }
+        }
+    }
+
+    @Override
+    public int nextShot() {
+        int shot = openHitCount > 0 ? bestTarget() : -1;
+        if (shot < 0) {
+            shot = bestHunt();
+        }
+        state[shot] = PENDING;
+        return shot;
+    }
+
+    @Override
+    public void shotResult(int row, int column, boolean hit, boolean sunk) {
+        int square = row * columns + column;
+        if (!hit) {
+            state[square] = MISS;
+            block(square);
+            return;
+        }
+        state[square] = HIT;
+        openHits[openHitCount++] = square;
+        if (sunk) {
+            sink(shipAt(row, column));
+        }
+    }
+
+    /**
+     * The unplayed square with the highest hunt density, ties broken at random.
+     */
+    private int bestHunt() {
+        int best = -1;
+        long bestScore = -1;
+        int ties = 0;
+        for (int s = 0; s < squares; s++) {
+            if (state[s] != UNKNOWN) {
+                continue;
+            }
+            long score = density[s];
+            if (score > bestScore) {
+                best = s;
+                bestScore = score;
+                ties = 1;
+            } else if (score == bestScore && random.nextInt(++ties) == 0) {
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The unplayed square covered best by open placements through the unsunk hits,
+     * or -1 if there is none.
+     */
+    private int bestTarget() {
+        touchedCount = 0;
+        for (int h = 0; h < openHitCount; h++) {
+            int hit = openHits[h];
+            int row = hit / columns;
+            int column = hit % columns;
+            for (int length = 2; length <= maxLength; length++) {
+                if (remaining[length] == 0) {
+                    continue;
+                }
+                for (int start = Math.max(0, column - length + 1); start <= Math.min(column, columns - length); start++) {
+                    scorePlacement(row * columns + start, 1, length, hit);
+                }
+                for (int start = Math.max(0, row - length + 1); start <= Math.min(row, rows - length); start++) {
+                    scorePlacement(start * columns + column, columns, length, hit);
+                }
+            }
+        }
+        int best = -1;
+        long bestScore = 0;
+        int ties = 0;
+        for (int t = 0; t < touchedCount; t++) {
+            int s = touched[t];
+            long score = target[s];
+            target[s] = 0;
+            if (score > bestScore) {
+                best = s;
+                bestScore = score;
+                ties = 1;
+            } else if (score == bestScore && score > 0 && random.nextInt(++ties) == 0) {
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Add one placement's weight to the target scores of its unplayed squares.
+     * Each placement is counted once, from the first unsunk hit it covers.
+     */
+    private void scorePlacement(int first, int step, int length, int from) {
+        int hits = 0;
+        for (int i = 0, s = first; i < length; i++, s += step) {
+            byte st = state[s];
+            if (st == MISS || st == SUNK) {
+                return;
+            }
+            if (st == HIT) {
+                if (hits == 0 && s != from) {
+                    return;
+                }
+                hits++;
+            }
+        }
+        long weight = (long) remaining[length] << (4 * Math.min(hits - 1, 14));
+        for (int i = 0, s = first; i < length; i++, s += step) {
+            if (state[s] == UNKNOWN) {
+                if (target[s] == 0) {
+                    touched[touchedCount++] = s;
+                }
+                target[s] += weight;
+            }
+        }
+    }
+
+    /**
+     * A square can no longer hold an unsunk ship: remove every open placement through it.
+     */
+    private void block(int square) {
+        int row = square / columns;
+        int column = square % columns;
+        for (int length = 1; length <= maxLength; length++) {
+            if (remaining[length] == 0) {
+                continue;
+            }
+            for (int start = Math.max(0, column - length + 1); start <= Math.min(column, columns - length); start++) {
+                removePlacement(row * columns + start, 1, length, square);
+            }
+            for (int start = Math.max(0, row - length + 1); start <= Math.min(row, rows - length); start++) {
+                removePlacement(start * columns + column, columns, length, square);
+            }
+        }
+    }
+
+    /**
+     * Remove a placement that was open until the given square was blocked.
+     */
+    private void removePlacement(int first, int step, int length, int blocked) {
+        for (int i = 0, s = first; i < length; i++, s += step) {
+            if (s != blocked && (state[s] == MISS || state[s] == SUNK)) {
+                return;
+            }
+        }
+        int base = length * squares;
+        long weight = remaining[length];
+        for (int i = 0, s = first; i < length; i++, s += step) {
+            cover[base + s]--;
+            density[s] -= weight;
+        }
+    }
+
+    /**
+     * The ship on a square, which the display reveals once the ship is sunk.
+     */
+    private Ship shipAt(int row, int column) {
+        try {
+            return board.getShip(row, column);
+        } catch (OutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private void sink(Ship ship) {
+        if (ship == null) {
+            return;
+        }
+        int length = ship.getLength();
+        Ship.Orientation ort = ship.getOrientation();
+        for (int i = 0; i < length; i++) {
+            int square = (ship.getRow() + i * ort.rDelta) * columns + ship.getColumn() + i * ort.cDelta;
+            for (int h = 0; h < openHitCount; h++) {
+                if (openHits[h] == square) {
+                    openHits[h] = openHits[--openHitCount];
+                    break;
+                }
+            }
+            block(square);
+            state[square] = SUNK;
+        }
+        if (length > 0 && length <= maxLength && remaining[length] > 0) {
+            int base = length * squares;
+            for (int s = 0; s < squares; s++) {
+                density[s] -= cover[base + s];
+            }
+            remaining[length]--;
+        }
+    }
+}
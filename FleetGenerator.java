@@ -0,0 +1,244 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Places fleets at random, every valid layout being equally likely.
+ *
+ * Each ship is given a placement drawn uniformly from every position and
+ * orientation where it fits on the empty board, and the squares it covers
+ * are checked against a bitmask of the ships drawn so far. A collision
+ * throws the whole fleet away and starts again. Rejecting whole fleets,
+ * rather than retrying the ship that collided, is what keeps the layouts
+ * uniform: a ship drawn late is not pushed into whatever gaps the earlier
+ * ones left. Nothing touches a Board until a complete fleet has been drawn,
+ * so no exceptions are thrown and no half-built boards are left behind.
+ *
+ * A generator can be shared between threads, each of which draws in its
+ * own scratch space; the layouts it makes depend only on the random number
+ * generator it is given.
+ */
+public class FleetGenerator implements Simulation.BoardFactory {
+
+    /**
+     * Fleets drawn before giving up on one that fits.
+     */
+    public static final int MAX_ATTEMPTS = 1000000;
+
+    private final int rows;
+
+    private final int columns;
+
+    private final int[] lengths;
+
+    /**
+     * horizontal[i] is the number of horizontal placements of ship i;
+     * placements[i] adds the vertical ones.
+     */
+    private final int[] horizontal;
+
+    private final int[] placements;
+
+    /**
+     * Room to draw a layout in, one per thread, so that reuseBoard allocates nothing.
+     */
+    private final ThreadLocal<Layout> layouts = ThreadLocal.withInitial(Layout::new);
+
+    /**
+     * @param rows board rows
+     * @param columns board columns
+     * @param lengths the length of each ship
+     */
+    public FleetGenerator(int rows, int columns, int... lengths) {
+        if (rows < 0 || columns < 0) {
+            throw new IllegalArgumentException("negative board dimensions");
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.lengths = lengths.clone();
+        this.horizontal = new int[lengths.length];
+        this.placements = new int[lengths.length];
+        for (int i = 0; i < lengths.length; i++) {
+            int length = lengths[i];
+            if (length < 1) {
+                throw new IllegalArgumentException("ship length must be at least 1");
+            }
+            horizontal[i] = columns >= length ? rows * (columns - length + 1) : 0;
+            // a ship of length 1 is the same whichever way it points
+            int vertical = length > 1 && rows >= length ? (rows - length + 1) * columns : 0;
+            placements[i] = horizontal[i] + vertical;
+        }
+    }
+
+    /**
+     * Make a board with a fleet placed uniformly at random.
+     * @param random decides the layout
+     * @return the board
+     * @throws BattleshipException if no layout was found, usually because the fleet cannot fit
+     */
+    @Override
+    public Board newBoard(SplittableRandom random) throws BattleshipException {
+        return deal(new Board(rows, columns), random);
+    }
+
+    /**
+     * Deal a new fleet onto a board this generator made, in place.
+     * Boards of another size are replaced. The layout is the one newBoard
+     * would make from the same random number generator, and once each
+     * thread has dealt a fleet, dealing another allocates nothing.
+     * @param board a board the caller is done with
+     * @param random decides the layout
+     * @return the board, with a new fleet and no shots
+     * @throws BattleshipException if no layout was found
+     */
+    @Override
+    public Board reuseBoard(Board board, SplittableRandom random) throws BattleshipException {
+        if (board.getWidth() != rows || board.getHeight() != columns) {
+            return newBoard(random);
+        }
+        return deal(board, random);
+    }
+
+    private Board deal(Board board, SplittableRandom random) throws BattleshipException {
+        Layout layout = layouts.get();
+        place(random, layout.squares, layout.vertical, layout.occupied);
+        board.clearFleet();
+        for (int i = 0; i < lengths.length; i++) {
+            Ship.Orientation ort = layout.vertical[i] ? Ship.Orientation.VERTICAL : Ship.Orientation.HORIZONTAL;
+            board.placeShip(layout.squares[i] / columns, layout.squares[i] % columns, ort, lengths[i]);
+        }
+        return board;
+    }
+
+    /**
+     * Draw a layout without building a board.
+     * @param random decides the layout
+     * @param squares receives the row-major square of each ship's upper left end
+     * @param vertical receives whether each ship is vertical
+     * @return the number of fleets drawn, including the one returned
+     * @throws BattleshipException if no layout was found
+     */
+    public int place(SplittableRandom random, int[] squares, boolean[] vertical) throws BattleshipException {
+        return place(random, squares, vertical, new long[(rows * columns + 63) >>> 6]);
+    }
+
+    /**
+     * @param occupied a bitmap of the board's squares, for the ships drawn so far
+     */
+    private int place(SplittableRandom random, int[] squares, boolean[] vertical, long[] occupied)
+            throws BattleshipException {
+        int total = 0;
+        for (int i = 0; i < lengths.length; i++) {
+            if (placements[i] == 0) {
+                throw new BattleshipException("No room for a ship of length " + lengths[i]);
+            }
+            total += lengths[i];
+        }
+        if (total > rows * columns) {
+            throw new BattleshipException("No room for the fleet");
+        }
+        Arrays.fill(occupied, 0);
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            if (draw(random, occupied, squares, vertical)) {
+                return attempt;
+            }
+            for (int w = 0; w < occupied.length; w++) {
+                occupied[w] = 0;
+            }
+        }
+        throw new BattleshipException("No room for the fleet");
+    }
+
+    /**
+     * Draw every ship's placement, stopping at the first collision.
+     * @return true if the whole fleet fits
+     */
+    private boolean draw(SplittableRandom random, long[] occupied, int[] squares, boolean[] vertical) {
+        for (int i = 0; i < lengths.length; i++) {
+            int length = lengths[i];
+            int p = random.nextInt(placements[i]);
+            int first;
+            int step;
+            if (p < horizontal[i]) {
+                int span = columns - length + 1;
+                first = (p / span) * columns + p % span;
+                step = 1;
+                vertical[i] = false;
+            } else {
+                first = p - horizontal[i];
+                step = columns;
+                vertical[i] = true;
+            }
+            for (int k = 0, s = first; k < length; k++, s += step) {
+                if ((occupied[s >>> 6] & (1L << s)) != 0) {
+                    return false;
+                }
+            }
+            for (int k = 0, s = first; k < length; k++, s += step) {
+                occupied[s >>> 6] |= 1L << s;
+            }
+            squares[i] = first;
+        }
+        return true;
+    }
+
+    private final class Layout {
+        private final int[] squares = new int[lengths.length];
+        private final boolean[] vertical = new boolean[lengths.length];
+        private final long[] occupied = new long[(rows * columns + 63) >>> 6];
+    }
+
+    /**
+     * Measure how fast boards are made.
+     * Usage: java FleetGenerator ROWSxCOLUMNS [boards] [seed] [length...]
+     * Without lengths the standard fleet is used.
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println(Battleship.BAD_ARG_COUNT);
+            return;
+        }
+        try {
+            String[] dimensions = args[0].split("x");
+            int boards = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+            int[] lengths = Simulation.STANDARD_FLEET;
+            if (args.length > 3) {
+                lengths = new int[args.length - 3];
+                for (int i = 3; i < args.length; i++) {
+                    lengths[i - 3] = Integer.parseInt(args[i]);
+                }
+            }
+            FleetGenerator generator = new FleetGenerator(Integer.parseInt(dimensions[0]),
+                    Integer.parseInt(dimensions[1]), lengths);
+            SplittableRandom random = new SplittableRandom(seed);
+            int[] squares = new int[lengths.length];
+            boolean[] vertical = new boolean[lengths.length];
+            long attempts = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < boards; i++) {
+                attempts += generator.place(random, squares, vertical);
+            }
+            long layoutNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < boards; i++) {
+                generator.newBoard(random);
+            }
+            long boardNanos = System.nanoTime() - start;
+            Board board = generator.newBoard(random);
+            start = System.nanoTime();
+            for (int i = 0; i < boards; i++) {
+                board = generator.reuseBoard(board, random);
+            }
+            long reuseNanos = System.nanoTime() - start;
+            System.out.println(boards + " layouts: " + (long) (boards * 1e9 / Math.max(layoutNanos, 1))
+                    + "/sec, " + String.format("%.1f", 100.0 * boards / attempts) + "% of draws accepted");
+            System.out.println(boards + " boards: " + (long) (boards * 1e9 / Math.max(boardNanos, 1)) + "/sec");
+            System.out.println(boards + " boards dealt again: " + (long) (boards * 1e9 / Math.max(reuseNanos, 1)) + "/sec");
+        } catch (BattleshipException e) {
+            System.out.println(e.getMessage());
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.out.println(Battleship.BAD_CONFIG_FILE);
+        }
+    }
+}
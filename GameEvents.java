@@ -0,0 +1,93 @@
+/**
+ * A batch of events from one board, stored in parallel arrays so that
+ * recording an event allocates nothing.
+ *
+ * Every shot is a SHOT event followed by HIT or MISS at the same square.
+ * A shot that sinks a ship adds SHIP_SUNK, and the shot that sinks the
+ * last ship of the fleet adds ALL_SUNK after that.
+ */
+public class GameEvents {
+
+    public enum Type {
+        SHOT, HIT, MISS, SHIP_SUNK, ALL_SUNK
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    private final Board board;
+
+    private final byte[] types;
+
+    private final int[] rows;
+
+    private final int[] columns;
+
+    private int size;
+
+    /**
+     * @param board the board the events happen on
+     * @param capacity how many events make a full batch
+     */
+    GameEvents(Board board, int capacity) {
+        this.board = board;
+        this.types = new byte[capacity];
+        this.rows = new int[capacity];
+        this.columns = new int[capacity];
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * @return the number of events in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    public Type getType(int i) {
+        return TYPES[types[check(i)]];
+    }
+
+    public int getRow(int i) {
+        return rows[check(i)];
+    }
+
+    public int getColumn(int i) {
+        return columns[check(i)];
+    }
+
+    /**
+     * @param i the event
+     * @return the ship on the event's square, or null for water
+     */
+    public Ship getShip(int i) {
+        return board.shipAt(rows[check(i)], columns[i]);
+    }
+
+    /**
+     * @return true if n more events fit in the batch
+     */
+    boolean hasRoom(int n) {
+        return size + n <= types.length;
+    }
+
+    void add(Type type, int row, int column) {
+        types[size] = (byte) type.ordinal();
+        rows[size] = row;
+        columns[size] = column;
+        size++;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    private int check(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return i;
+    }
+}
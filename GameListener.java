@@ -0,0 +1,21 @@
+/**
+ * Hears what happens on a board, for output, logging and statistics that
+ * should not be the board's own business.
+ *
+ * Events are handed over in batches rather than one at a time: the board
+ * collects them as shots are fired and delivers them when the batch fills,
+ * when the last ship sinks, and whenever Board#flushEvents is called.
+ * A ConcurrentBoard instead delivers each shot's events as soon as it is
+ * fired, on whichever thread fired it.
+ *
+ * @see Board#addListener(GameListener)
+ */
+public interface GameListener {
+
+    /**
+     * Called on the thread that fired the shots, oldest event first.
+     * The batch is reused once this returns, so copy anything that is needed later.
+     * @param events the events since the last batch
+     */
+    void onEvents(GameEvents events);
+}
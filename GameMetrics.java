@@ -0,0 +1,340 @@
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Counts and times what the game does, for JMX and JDK Flight Recorder.
+ *
+ * The game calls start() before an operation and end() after it. Each
+ * operation keeps a latency histogram with one bucket per power of two
+ * nanoseconds, commands also measure the bytes their thread allocated, and
+ * BattleshipExceptions reported to the player are counted by class. All the
+ * counters are LongAdders, so many sessions can record at once without
+ * contending. The totals are published as the MXBean battleship:type=GameMetrics,
+ * and every operation is also a battleship.Operation JFR event, which costs
+ * nothing unless a recording has enabled it.
+ *
+ * Starting the JVM with -Dbattleship.metrics=false turns all of this off:
+ * start() returns 0 without reading the clock, end() returns at once, and
+ * the MXBean is never registered.
+ */
+public class GameMetrics {
+
+    /**
+     * False when metrics are switched off for the life of the JVM.
+     */
+    public static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("battleship.metrics"));
+
+    /**
+     * The operations that are timed.
+     */
+    public enum Operation {
+        COMMAND, HIT, DISPLAY, SAVE, LOAD;
+
+        private final String key = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final Histogram[] LATENCIES = new Histogram[Operation.values().length];
+
+    private static final LongAdder ALLOCATED = new LongAdder();
+
+    private static final Map<String, LongAdder> EXCEPTIONS = new ConcurrentHashMap<>();
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private static volatile long resetNanos = System.nanoTime();
+
+    static {
+        for (int i = 0; i < LATENCIES.length; i++) {
+            LATENCIES[i] = new Histogram();
+        }
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(),
+                        new ObjectName("battleship:type=GameMetrics"));
+            } catch (JMException | SecurityException e) {
+                // already registered by another class loader, or not allowed; the counters still work
+            }
+        }
+    }
+
+    private GameMetrics() {
+    }
+
+    /**
+     * @return the time an operation starts, to pass to end()
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record an operation that has finished.
+     * @param operation what was done
+     * @param start what start() returned before it
+     */
+    public static void end(Operation operation, long start) {
+        if (!ENABLED) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        LATENCIES[operation.ordinal()].record(nanos);
+        OperationEvent event = new OperationEvent();
+        if (event.shouldCommit()) {
+            event.operation = operation.key;
+            event.latency = nanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return the bytes the current thread has allocated so far, to pass to endCommand(),
+     * or 0 if the JVM cannot tell
+     */
+    public static long allocatedBytes() {
+        return ENABLED && THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Record a command that has finished.
+     * @param command the command's first word
+     * @param start what start() returned before it
+     * @param allocatedBefore what allocatedBytes() returned before it
+     */
+    public static void endCommand(String command, long start, long allocatedBefore) {
+        if (!ENABLED) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore : 0;
+        LATENCIES[Operation.COMMAND.ordinal()].record(nanos);
+        ALLOCATED.add(allocated);
+        CommandEvent event = new CommandEvent();
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.latency = nanos;
+            event.allocated = allocated;
+            event.commit();
+        }
+    }
+
+    /**
+     * Count an exception that was reported to the player.
+     * @param e the exception
+     */
+    public static void exception(BattleshipException e) {
+        if (!ENABLED) {
+            return;
+        }
+        EXCEPTIONS.computeIfAbsent(e.getClass().getName(), name -> new LongAdder()).increment();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (!ENABLED) {
+            return null;
+        }
+        try {
+            java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+                return (com.sun.management.ThreadMXBean) threads;
+            }
+        } catch (UnsupportedOperationException | SecurityException e) {
+            // allocation is reported as 0
+        }
+        return null;
+    }
+
+    /**
+     * Latencies with one bucket per power of two nanoseconds.
+     */
+    private static class Histogram {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder total = new LongAdder();
+
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private final LongAdder[] buckets = new LongAdder[64];
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            nanos = Math.max(nanos, 0);
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+            buckets[63 - Long.numberOfLeadingZeros(nanos | 1)].increment();
+        }
+
+        /**
+         * @return the upper end of the bucket holding the given fraction of the latencies, in nanoseconds
+         */
+        long percentile(double fraction) {
+            long[] counts = new long[buckets.length];
+            long n = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets[i].sum();
+                n += counts[i];
+            }
+            long rank = (long) Math.ceil(fraction * n);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min((2L << i) - 1, max.get());
+                }
+            }
+            return 0;
+        }
+
+        void reset() {
+            count.reset();
+            total.reset();
+            max.reset();
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+        }
+    }
+
+    /**
+     * The game's metrics as seen through JMX.
+     */
+    public interface GameMetricsMXBean {
+
+        /**
+         * @return commands carried out since the last reset
+         */
+        long getCommands();
+
+        /**
+         * @return commands carried out per second since the last reset
+         */
+        double getCommandsPerSecond();
+
+        /**
+         * @return the mean number of bytes allocated by a command
+         */
+        double getAllocatedBytesPerCommand();
+
+        /**
+         * @return how many BattleshipExceptions of each class were reported to players
+         */
+        Map<String, Long> getExceptionCounts();
+
+        /**
+         * @return for each operation, its count and its mean, p50, p99 and maximum latency
+         * in microseconds, under keys like "hit.count" and "hit.p99"
+         */
+        Map<String, Double> getLatencyMicros();
+
+        /**
+         * Start counting again from zero.
+         */
+        void reset();
+    }
+
+    private static class Bean implements GameMetricsMXBean {
+
+        @Override
+        public long getCommands() {
+            return LATENCIES[Operation.COMMAND.ordinal()].count.sum();
+        }
+
+        @Override
+        public double getCommandsPerSecond() {
+            long nanos = System.nanoTime() - resetNanos;
+            return nanos <= 0 ? 0 : getCommands() * 1e9 / nanos;
+        }
+
+        @Override
+        public double getAllocatedBytesPerCommand() {
+            long commands = getCommands();
+            return commands == 0 ? 0 : (double) ALLOCATED.sum() / commands;
+        }
+
+        @Override
+        public Map<String, Long> getExceptionCounts() {
+            Map<String, Long> counts = new TreeMap<>();
+            for (Map.Entry<String, LongAdder> entry : EXCEPTIONS.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue().sum());
+            }
+            return counts;
+        }
+
+        @Override
+        public Map<String, Double> getLatencyMicros() {
+            Map<String, Double> latencies = new TreeMap<>();
+            for (Operation operation : Operation.values()) {
+                Histogram histogram = LATENCIES[operation.ordinal()];
+                long count = histogram.count.sum();
+                latencies.put(operation.key + ".count", (double) count);
+                latencies.put(operation.key + ".mean", count == 0 ? 0 : histogram.total.sum() / 1e3 / count);
+                latencies.put(operation.key + ".p50", histogram.percentile(0.5) / 1e3);
+                latencies.put(operation.key + ".p99", histogram.percentile(0.99) / 1e3);
+                latencies.put(operation.key + ".max", histogram.max.get() / 1e3);
+            }
+            return latencies;
+        }
+
+        @Override
+        public void reset() {
+            for (Histogram histogram : LATENCIES) {
+                histogram.reset();
+            }
+            ALLOCATED.reset();
+            EXCEPTIONS.clear();
+            resetNanos = System.nanoTime();
+        }
+    }
+
+    @Name("battleship.Operation")
+    @Label("Battleship Operation")
+    @Category("Battleship")
+    private static class OperationEvent extends Event {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    @Name("battleship.Command")
+    @Label("Battleship Command")
+    @Category("Battleship")
+    private static class CommandEvent extends Event {
+
+        @Label("Command")
+        String command;
+
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+}
@@ -0,0 +1,319 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A finished or unfinished game as its starting layout and the shots fired, in order.
+ *
+ * Recordings are written one after another into a file, each as:
+ * <pre>
+ *   int   magic 'BSRC'
+ *   short format version
+ *   short flags (0, or SPARSE for a sparse board)
+ *   int   rows, int columns
+ *   int   number of ships, then for each ship:
+ *           int row, int column, byte orientation (0 horizontal, 1 vertical), int length
+ *   int   number of shots, then for each shot: int row, int column
+ *   int   CRC32 of the record
+ * </pre>
+ * all big-endian, so a file of recordings can be streamed through without
+ * an index. A standard 10x10 game of 60 shots takes about 570 bytes.
+ *
+ * @see Replay
+ */
+public class GameRecording {
+
+    public static final int MAGIC = 0x42535243;
+
+    public static final short VERSION = 1;
+
+    public static final short SPARSE = 1;
+
+    private static final int HEADER_SIZE = 20;
+
+    private static final int SHIP_SIZE = 13;
+
+    private final int rows;
+
+    private final int columns;
+
+    private final boolean sparse;
+
+    /**
+     * Four ints per ship: row, column, orientation ordinal, length.
+     */
+    private final int[] ships;
+
+    /**
+     * Two ints per shot: row, column.
+     */
+    private final int[] shots;
+
+    private GameRecording(int rows, int columns, boolean sparse, int[] ships, int[] shots) {
+        this.rows = rows;
+        this.columns = columns;
+        this.sparse = sparse;
+        this.ships = ships;
+        this.shots = shots;
+    }
+
+    /**
+     * Record a game from its board, which keeps its ships and the order of its shots.
+     * @param board the game's board
+     * @return the recording
+     */
+    public static GameRecording of(Board board) {
+        List<Ship> fleet = board.getShips();
+        int[] ships = new int[4 * fleet.size()];
+        for (int i = 0; i < fleet.size(); i++) {
+            Ship ship = fleet.get(i);
+            ships[4 * i] = ship.getRow();
+            ships[4 * i + 1] = ship.getColumn();
+            ships[4 * i + 2] = ship.getOrientation().ordinal();
+            ships[4 * i + 3] = ship.getLength();
+        }
+        long columns = board.getHeight();
+        int[] shots = new int[2 * board.getShotCount()];
+        for (int n = 0; n < board.getShotCount(); n++) {
+            long square = board.shotSquare(n);
+            shots[2 * n] = (int) (square / columns);
+            shots[2 * n + 1] = (int) (square % columns);
+        }
+        return new GameRecording(board.getWidth(), board.getHeight(), board instanceof SparseBoard, ships, shots);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the number of shots recorded
+     */
+    public int getShotCount() {
+        return shots.length / 2;
+    }
+
+    public int getShotRow(int n) {
+        return shots[2 * n];
+    }
+
+    public int getShotColumn(int n) {
+        return shots[2 * n + 1];
+    }
+
+    /**
+     * Set up the game's board as it was before the first shot.
+     * @return a new headless board with the fleet placed
+     * @throws BattleshipException if the recorded fleet does not fit
+     */
+    public Board newBoard() throws BattleshipException {
+        Board board = sparse ? new SparseBoard(rows, columns) : new Board(rows, columns);
+        board.setHeadless(true);
+        Ship.Orientation[] orientations = Ship.Orientation.values();
+        for (int i = 0; i < ships.length; i += 4) {
+            new Ship(board, ships[i], ships[i + 1], orientations[ships[i + 2]], ships[i + 3]);
+        }
+        return board;
+    }
+
+    /**
+     * Fire shots [from, to) at a board.
+     * @param board the game's board after shot from - 1
+     * @param from the first shot to fire
+     * @param to one past the last shot to fire
+     * @throws BattleshipException if a recorded shot is illegal on the board
+     */
+    public void play(Board board, int from, int to) throws BattleshipException {
+        for (int n = from; n < to; n++) {
+            board.hit(shots[2 * n], shots[2 * n + 1]);
+        }
+    }
+
+    /**
+     * Encode the recording.
+     * @return a buffer positioned at the start of the record
+     */
+    public ByteBuffer encode() {
+        int shipCount = ships.length / 4;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + shipCount * SHIP_SIZE + 4 + 4 * shots.length + 4);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort(sparse ? SPARSE : 0);
+        buffer.putInt(rows);
+        buffer.putInt(columns);
+        buffer.putInt(shipCount);
+        for (int i = 0; i < ships.length; i += 4) {
+            buffer.putInt(ships[i]);
+            buffer.putInt(ships[i + 1]);
+            buffer.put((byte) ships[i + 2]);
+            buffer.putInt(ships[i + 3]);
+        }
+        buffer.putInt(shots.length / 2);
+        for (int shot : shots) {
+            buffer.putInt(shot);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Write the recording to a channel.
+     * @param channel where to write it
+     * @throws IOException if the channel cannot be written
+     */
+    public void write(WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = encode();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Add the recording to the end of a file of recordings, creating it if needed.
+     * @param path the file
+     * @throws IOException if the file cannot be written
+     */
+    public void append(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            write(channel);
+        }
+    }
+
+    /**
+     * Reads a file of recordings one at a time through a reusable buffer.
+     */
+    public static class Reader implements AutoCloseable {
+
+        private final ReadableByteChannel channel;
+
+        private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+        private boolean exhausted;
+
+        /**
+         * @param channel the recordings
+         */
+        public Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        /**
+         * @param path a file of recordings
+         * @throws IOException if the file cannot be opened
+         */
+        public Reader(Path path) throws IOException {
+            this(FileChannel.open(path, StandardOpenOption.READ));
+        }
+
+        /**
+         * @return the next recording, or null at the end of the input
+         * @throws IOException if the input cannot be read or holds a corrupt recording
+         */
+        public GameRecording next() throws IOException {
+            if (!fill(HEADER_SIZE)) {
+                if (buffer.hasRemaining()) {
+                    throw new IOException("Corrupt recording: truncated");
+                }
+                return null;
+            }
+            int start = buffer.position();
+            if (buffer.getInt(start) != MAGIC) {
+                throw new IOException("Not a Battleship recording");
+            }
+            short version = buffer.getShort(start + 4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported recording version " + version);
+            }
+            short flags = buffer.getShort(start + 6);
+            if ((flags & ~SPARSE) != 0) {
+                throw new IOException("Unsupported recording flags " + flags);
+            }
+            int shipCount = buffer.getInt(start + 16);
+            if (shipCount < 0 || shipCount > (Integer.MAX_VALUE - HEADER_SIZE - 8) / SHIP_SIZE) {
+                throw new IOException("Corrupt recording: bad ship count");
+            }
+            int shotsAt = HEADER_SIZE + shipCount * SHIP_SIZE;
+            if (!fill(shotsAt + 4)) {
+                throw new IOException("Corrupt recording: truncated");
+            }
+            start = buffer.position();
+            int shotCount = buffer.getInt(start + shotsAt);
+            if (shotCount < 0 || shotCount > (Integer.MAX_VALUE - shotsAt - 8) / 8) {
+                throw new IOException("Corrupt recording: bad shot count");
+            }
+            int size = shotsAt + 4 + 8 * shotCount + 4;
+            if (!fill(size)) {
+                throw new IOException("Corrupt recording: truncated");
+            }
+            start = buffer.position();
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().limit(start + size - 4));
+            if (buffer.getInt(start + size - 4) != (int) crc.getValue()) {
+                throw new IOException("Corrupt recording: checksum mismatch");
+            }
+            buffer.position(start + 8);
+            int rows = buffer.getInt();
+            int columns = buffer.getInt();
+            buffer.getInt();
+            int[] ships = new int[4 * shipCount];
+            for (int i = 0; i < ships.length; i += 4) {
+                ships[i] = buffer.getInt();
+                ships[i + 1] = buffer.getInt();
+                ships[i + 2] = buffer.get();
+                ships[i + 3] = buffer.getInt();
+                if (ships[i + 2] < 0 || ships[i + 2] >= Ship.Orientation.values().length) {
+                    throw new IOException("Corrupt recording: bad ship orientation");
+                }
+            }
+            buffer.getInt();
+            int[] shots = new int[2 * shotCount];
+            buffer.asIntBuffer().get(shots);
+            buffer.position(start + size);
+            return new GameRecording(rows, columns, flags == SPARSE, ships, shots);
+        }
+
+        /**
+         * Make at least size bytes available from the buffer's position.
+         * @return false if the input ends first
+         */
+        private boolean fill(int size) throws IOException {
+            if (buffer.remaining() >= size) {
+                return true;
+            }
+            buffer.compact();
+            if (size > buffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+            while (buffer.position() < size && !exhausted) {
+                if (channel.read(buffer) < 0) {
+                    exhausted = true;
+                }
+            }
+            buffer.flip();
+            return buffer.remaining() >= size;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The classic hunt and target player.
+ * While hunting it shoots random squares of a checkerboard pattern, which
+ * every ship of length two or more must cross. After a hit it targets the
+ * neighbours of the hit square until it runs out of them, then goes back to hunting.
+ */
+public class HuntTargetStrategy implements ShootingStrategy {
+
+    private int rows;
+
+    private int columns;
+
+    /**
+     * Hunt order: checkerboard squares first, then the rest, each part shuffled.
+     */
+    private int[] order = new int[0];
+
+    private int next;
+
+    private boolean[] played = new boolean[0];
+
+    private int[] targets = new int[0];
+
+    private int targetCount;
+
+    @Override
+    public String getName() {
+        return "hunt-target";
+    }
+
+    @Override
+    public void newGame(Board board, SplittableRandom random) {
+        rows = board.getWidth();
+        columns = board.getHeight();
+        int squares = rows * columns;
+        if (order.length != squares) {
+            order = new int[squares];
+            played = new boolean[squares];
+            targets = new int[4 * squares];
+        }
+        int even = 0;
+        for (int i = 0; i < squares; i++) {
+            if (((i / columns) + (i % columns)) % 2 == 0) {
+                order[even++] = i;
+            }
+        }
+        int odd = even;
+        for (int i = 0; i < squares; i++) {
+            if (((i / columns) + (i % columns)) % 2 != 0) {
+                order[odd++] = i;
+            }
+        }
+        shuffle(random, 0, even);
+        shuffle(random, even, squares);
+        Arrays.fill(played, false);
+        next = 0;
+        targetCount = 0;
+    }
+
+    @Override
+    public int nextShot() {
+        int shot;
+        do {
+            shot = targetCount > 0 ? targets[--targetCount] : order[next++];
+        } while (played[shot]);
+        played[shot] = true;
+        return shot;
+    }
+
+    @Override
+    public void shotResult(int row, int column, boolean hit, boolean sunk) {
+        if (hit) {
+            target(row - 1, column);
+            target(row + 1, column);
+            target(row, column - 1);
+            target(row, column + 1);
+        }
+    }
+
+    private void target(int row, int column) {
+        if (row >= 0 && row < rows && column >= 0 && column < columns) {
+            int square = row * columns + column;
+            if (!played[square]) {
+                targets[targetCount++] = square;
+            }
+        }
+    }
+
+    private void shuffle(SplittableRandom random, int from, int to) {
+        for (int i = to - 1; i > from; i--) {
+            int j = from + random.nextInt(i - from + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the shots of one game, so that a crash loses
+ * nothing and saving a shot costs one small sequential write.
+ *
+ * The journal is a directory of numbered files. snapshot-N.bin is the whole
+ * board in the BoardFile format, and journal-N.log holds every shot played
+ * after snapshot N was taken, each as a fixed 12-byte record:
+ * <pre>
+ *   int row, int column, int CRC32 of the row and column
+ * </pre>
+ * behind an 8-byte header of the magic 'BSJL' and a format version.
+ *
+ * Every so many shots the journal moves on to a new segment and a background
+ * thread writes the next snapshot. Once that snapshot is safely on disk the
+ * older snapshots and segments are deleted, so the directory never holds
+ * more than a snapshot interval of shots. Recovery loads the newest readable
+ * snapshot and replays the segments from its number on, stopping at a torn
+ * or corrupt record.
+ */
+public class MoveJournal implements AutoCloseable {
+
+    public static final int MAGIC = 0x42534A4C;
+
+    public static final short VERSION = 1;
+
+    /**
+     * Shots between snapshots when none is given.
+     */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 256;
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final int RECORD_SIZE = 12;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+
+    private final Board board;
+
+    private final int snapshotInterval;
+
+    private final boolean sync;
+
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+
+    private final CRC32 crc = new CRC32();
+
+    private final ExecutorService snapshots = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "battleship-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private FileChannel segment;
+
+    private long segmentNumber;
+
+    private int shotsInSegment;
+
+    /**
+     * The first failure of a background snapshot, reported by the next record or close.
+     */
+    private volatile IOException snapshotFailure;
+
+    private MoveJournal(Path directory, Board board, int snapshotInterval, boolean sync) {
+        this.directory = directory;
+        this.board = board;
+        this.snapshotInterval = snapshotInterval;
+        this.sync = sync;
+    }
+
+    /**
+     * Start journaling a board, replacing any journal already in the directory.
+     * @see #open(Path, Board, int, boolean)
+     */
+    public static MoveJournal open(Path directory, Board board) throws IOException {
+        return open(directory, board, DEFAULT_SNAPSHOT_INTERVAL, false);
+    }
+
+    /**
+     * Start journaling a board. Its current state is written as the first
+     * snapshot, and whatever the directory held before is deleted, so recover
+     * any game in it first.
+     * @param directory where the journal is kept; it is created if needed
+     * @param board the board whose shots will be recorded
+     * @param snapshotInterval how many shots to record between snapshots
+     * @param sync true to force every record to the disk before returning,
+     *             which survives power loss and not just a crash of the program
+     * @return the journal
+     * @throws IOException if the journal cannot be written
+     */
+    public static MoveJournal open(Path directory, Board board, int snapshotInterval, boolean sync)
+            throws IOException {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("snapshot interval must be at least 1");
+        }
+        Files.createDirectories(directory);
+        MoveJournal journal = new MoveJournal(directory, board, snapshotInterval, sync);
+        List<Long> snapshotNumbers = numbers(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        List<Long> segmentNumbers = numbers(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        long last = 0;
+        if (!snapshotNumbers.isEmpty()) {
+            last = Math.max(last, snapshotNumbers.get(snapshotNumbers.size() - 1));
+        }
+        if (!segmentNumbers.isEmpty()) {
+            last = Math.max(last, segmentNumbers.get(segmentNumbers.size() - 1));
+        }
+        journal.segmentNumber = last + 1;
+        journal.writeSnapshot(BoardFile.encode(board), journal.segmentNumber);
+        journal.segment = journal.openSegment(journal.segmentNumber);
+        return journal;
+    }
+
+    /**
+     * Rebuild the board of a journaled game.
+     * @param directory the journal's directory
+     * @return the board as of the last recorded shot, or null if the directory holds no journal
+     * @throws IOException if the directory holds a journal but no snapshot can be read
+     */
+    public static Board recover(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        List<Long> snapshotNumbers = numbers(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        if (snapshotNumbers.isEmpty()) {
+            return null;
+        }
+        IOException failure = null;
+        for (int i = snapshotNumbers.size() - 1; i >= 0; i--) {
+            long number = snapshotNumbers.get(i);
+            Board board;
+            try {
+                board = BoardFile.read(file(directory, SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX));
+            } catch (IOException e) {
+                failure = e;
+                continue;
+            }
+            boolean headless = board.isHeadless();
+            board.setHeadless(true);
+            for (long segmentNumber : numbers(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+                if (segmentNumber >= number) {
+                    replay(file(directory, SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX), board);
+                }
+            }
+            board.setHeadless(headless);
+            return board;
+        }
+        throw new IOException("No readable snapshot in journal " + directory + ": " + failure.getMessage());
+    }
+
+    /**
+     * Record a shot that has just been played on the board.
+     * @param row the shot's row
+     * @param column the shot's column
+     * @throws IOException if the record cannot be written, or the last background snapshot failed
+     */
+    public void record(int row, int column) throws IOException {
+        IOException failure = snapshotFailure;
+        if (failure != null) {
+            snapshotFailure = null;
+            throw failure;
+        }
+        record.clear();
+        record.putInt(row).putInt(column);
+        crc.reset();
+        crc.update(record.array(), 0, 8);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            segment.write(record);
+        }
+        if (sync) {
+            segment.force(false);
+        }
+        if (++shotsInSegment >= snapshotInterval) {
+            snapshot();
+        }
+    }
+
+    /**
+     * Move on to a new segment and write a snapshot of the board in the background.
+     * The board is encoded here, so it may change as soon as this returns.
+     * @throws IOException if the new segment cannot be created
+     */
+    public void snapshot() throws IOException {
+        ByteBuffer encoded = BoardFile.encode(board);
+        long number = segmentNumber + 1;
+        FileChannel next = openSegment(number);
+        segment.close();
+        segment = next;
+        segmentNumber = number;
+        shotsInSegment = 0;
+        snapshots.execute(() -> {
+            try {
+                writeSnapshot(encoded, number);
+            } catch (IOException e) {
+                if (snapshotFailure == null) {
+                    snapshotFailure = e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Finish any snapshot in progress and close the current segment.
+     * The journal stays on disk, ready to be recovered.
+     */
+    @Override
+    public void close() throws IOException {
+        snapshots.shutdown();
+        try {
+            snapshots.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.close();
+        IOException failure = snapshotFailure;
+        if (failure != null) {
+            snapshotFailure = null;
+            throw failure;
+        }
+    }
+
+    /**
+     * Write snapshot number to a temporary file, move it into place once it is
+     * on disk, then delete everything older.
+     */
+    private void writeSnapshot(ByteBuffer encoded, long number) throws IOException {
+        Path target = file(directory, SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (encoded.hasRemaining()) {
+                channel.write(encoded);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        compact(number);
+    }
+
+    /**
+     * Delete the snapshots and segments that snapshot number makes unnecessary.
+     */
+    private void compact(long number) throws IOException {
+        for (long older : numbers(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (older < number) {
+                Files.deleteIfExists(file(directory, SNAPSHOT_PREFIX, older, SNAPSHOT_SUFFIX));
+            }
+        }
+        for (long older : numbers(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (older < number) {
+                Files.deleteIfExists(file(directory, SEGMENT_PREFIX, older, SEGMENT_SUFFIX));
+            }
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        FileChannel channel = FileChannel.open(file(directory, SEGMENT_PREFIX, number, SEGMENT_SUFFIX),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        if (sync) {
+            channel.force(true);
+        }
+        return channel;
+    }
+
+    /**
+     * Apply a segment's shots to a board. Shots the board has already seen are
+     * skipped, and a torn or corrupt record ends the segment.
+     */
+    private static void replay(Path path, Board board) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+            return;
+        }
+        buffer.getShort();
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_SIZE) {
+            crc.reset();
+            crc.update(bytes, buffer.position(), 8);
+            int row = buffer.getInt();
+            int column = buffer.getInt();
+            if (buffer.getInt() != (int) crc.getValue()) {
+                return;
+            }
+            try {
+                if (!board.isHit(row, column)) {
+                    board.hit(row, column);
+                }
+            } catch (BattleshipException e) {
+                return;
+            }
+        }
+    }
+
+    private static Path file(Path directory, String prefix, long number, String suffix) {
+        return directory.resolve(prefix + String.format(Locale.ROOT, "%016d", number) + suffix);
+    }
+
+    /**
+     * The numbers of the files named prefix + number + suffix in a directory, in ascending order.
+     */
+    private static List<Long> numbers(Path directory, String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+}
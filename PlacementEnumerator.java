@@ -0,0 +1,732 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts every layout of the ships still afloat that agrees with what a
+ * player can see on a board, and from that the exact probability that each
+ * square holds a ship.
+ *
+ * A layout agrees with the board when no ship covers a miss or a sunk
+ * ship's square, no two ships overlap, and every hit on a ship that is not
+ * sunk yet is covered. Ships of the same length are not told apart, so the
+ * standard fleet on an empty 10x10 board has 15,046,987,768 layouts.
+ *
+ * Layouts are not listed one by one. The squares are visited in row-major
+ * order, and a partial layout is reduced to what matters for the squares
+ * still to come: how far the vertical ship in each column reaches below the
+ * squares visited, how far the current horizontal ship reaches to the
+ * right, and how many ships of each length have been placed, all packed
+ * into one long. Partial layouts that reduce to the same state are counted
+ * together, so the work follows the number of states (a few hundred
+ * thousand per square at most for the standard fleet) rather than the
+ * number of layouts. A forward pass counts the ways to reach each state and
+ * a backward pass the ways to finish from it; their product over the states
+ * in which a square is covered is the square's count. The forward pass
+ * keeps only the first state set of every row and recomputes the rest of a
+ * row during the backward pass.
+ *
+ * A state keeps the columns in the order they come up, starting with the
+ * current square's, so deciding a square only changes its low bits and puts
+ * the column just decided on top. States that agree on the other columns
+ * form a group whose successors agree on them too: a group's successors are
+ * added up in a table indexed by the low bits and read back in order, one
+ * run per reach of the column just decided, so the state sets stay sorted
+ * without merging. The backward pass loads the group's part of the next
+ * state set into the same kind of table to look successors up. Both passes
+ * split the state set at group boundaries into ranges that run as fork-join
+ * tasks. Boards are enumerated in whichever orientation has fewer columns,
+ * and a board that looks the same turned half way round has the same count
+ * at opposite squares, so its backward pass stops half way up.
+ */
+public class PlacementEnumerator {
+
+    private static final byte OPEN = 0;
+    private static final byte HIT = 1;
+    private static final byte BLOCKED = 2;
+
+    /**
+     * The most bits a state's low part may have, which sizes each worker's table.
+     */
+    private static final int MAX_SLOT_BITS = 20;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * The board as enumerated, which is the board transposed if it is wider than it is tall.
+     */
+    private final boolean transposed;
+
+    private final int rows;
+
+    private final int columns;
+
+    private final byte[] knowledge;
+
+    /**
+     * The distinct lengths of the ships afloat, how many ships have each
+     * length, and where each length's placed count is kept in a state.
+     */
+    private final int[] lengths;
+
+    private final int[] fleet;
+
+    private final int[] placedShift;
+
+    private final long[] placedMask;
+
+    /**
+     * Bits per reach in a state, and how many reaches a field can hold.
+     */
+    private final int reachBits;
+
+    private final long reachMask;
+
+    private final int buckets;
+
+    /**
+     * From bit 0 a state holds the placed counts, the horizontal reach, the
+     * current column's reach, and then the other columns' reaches in the
+     * order they come up; the last of them, at topShift, is the column
+     * decided last. A state's group is everything above the next column.
+     */
+    private final int horizontalShift;
+
+    private final int currentShift;
+
+    private final int blockShift;
+
+    private final int topShift;
+
+    private final int groupShift;
+
+    /**
+     * The state with every ship placed.
+     */
+    private final long complete;
+
+    private final long placements;
+
+    private final long[] counts;
+
+    private final ThreadLocal<Table> tables = ThreadLocal.withInitial(Table::new);
+
+    /**
+     * Each range's runs from the last forward step, per bucket, and the
+     * state sets no longer needed, all kept to be filled again.
+     */
+    private Layer[][] runs = new Layer[0][];
+
+    private final ArrayDeque<Layer> spares = new ArrayDeque<>();
+
+    /**
+     * @see #PlacementEnumerator(Board, ForkJoinPool)
+     */
+    public PlacementEnumerator(Board board) {
+        this(board, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Count the layouts that agree with the board as it is now.
+     * @param board the board, which is only read
+     * @param pool the workers to count with
+     * @throws IllegalArgumentException if the narrower side of the board is too wide,
+     *         or the fleet afloat too big, to enumerate
+     * @throws ArithmeticException if there are more layouts than a long can count
+     */
+    public PlacementEnumerator(Board board, ForkJoinPool pool) {
+        this.pool = pool;
+        int boardRows = board.getWidth();
+        int boardColumns = board.getHeight();
+        transposed = boardColumns > boardRows;
+        rows = transposed ? boardColumns : boardRows;
+        columns = transposed ? boardRows : boardColumns;
+        knowledge = new byte[rows * columns];
+        for (int row = 0; row < boardRows; row++) {
+            for (int column = 0; column < boardColumns; column++) {
+                char status = board.displayHitStatusAt(row, column);
+                knowledge[square(row, column)] = status == Cell.PRISTINE_WATER ? OPEN
+                        : status == Cell.HIT_SHIP_SECTION ? HIT : BLOCKED;
+            }
+        }
+        int maxLength = Math.max(board.getMaxShipLength(), 0);
+        int distinct = 0;
+        for (int length = 1; length <= maxLength; length++) {
+            if (board.getShipsRemaining(length) > 0) {
+                distinct++;
+            }
+        }
+        lengths = new int[distinct];
+        fleet = new int[distinct];
+        placedShift = new int[distinct];
+        placedMask = new long[distinct];
+        reachBits = 32 - Integer.numberOfLeadingZeros(Math.max(maxLength - 1, 0));
+        reachMask = (1L << reachBits) - 1;
+        buckets = 1 << reachBits;
+        int shift = 0;
+        long full = 0;
+        for (int length = 1, i = 0; length <= maxLength; length++) {
+            int ships = board.getShipsRemaining(length);
+            if (ships > 0) {
+                lengths[i] = length;
+                fleet[i] = ships;
+                placedShift[i] = shift;
+                placedMask[i] = Integer.highestOneBit(ships) * 2L - 1;
+                full += (long) ships << shift;
+                shift += 32 - Integer.numberOfLeadingZeros(ships);
+                i++;
+            }
+        }
+        horizontalShift = shift;
+        currentShift = horizontalShift + reachBits;
+        blockShift = currentShift + reachBits;
+        topShift = blockShift + (columns - 2) * reachBits;
+        groupShift = blockShift + reachBits;
+        if (shift + (columns + 1) * reachBits > 63) {
+            throw new IllegalArgumentException("board too wide to enumerate: " + columns + " columns");
+        }
+        if (groupShift > MAX_SLOT_BITS) {
+            throw new IllegalArgumentException("too many ships to enumerate: " + board.getShipsRemaining());
+        }
+        complete = full;
+        counts = new long[rows * columns];
+        placements = enumerate();
+    }
+
+    /**
+     * @return the number of layouts that agree with the board, or 0 if none does
+     */
+    public long getPlacementCount() {
+        return placements;
+    }
+
+    /**
+     * @param row row number (0-based)
+     * @param column column number (0-based)
+     * @return the number of agreeing layouts in which a ship afloat covers the square
+     */
+    public long getCount(int row, int column) {
+        return counts[square(row, column)];
+    }
+
+    /**
+     * The chance that a ship afloat covers the square, if every agreeing layout
+     * is equally likely. Unsunk hits have probability 1, and misses and sunk
+     * squares 0.
+     * @param row row number (0-based)
+     * @param column column number (0-based)
+     * @return the probability, or 0 if no layout agrees with the board
+     */
+    public double getProbability(int row, int column) {
+        return placements == 0 ? 0 : (double) getCount(row, column) / placements;
+    }
+
+    /**
+     * Time the enumeration on a random standard fleet and print the probabilities.
+     * Usage: java PlacementEnumerator [shots] [seed] [size]
+     * The given number of random shots is fired at a size x size board first.
+     * @param args
+     */
+    public static void main(String[] args) {
+        try {
+            int shots = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+            long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+            int size = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+            SplittableRandom random = new SplittableRandom(seed);
+            Board board = new FleetGenerator(size, size, Simulation.STANDARD_FLEET).newBoard(random);
+            board.setHeadless(true);
+            for (int fired = 0; fired < shots && fired < size * size; ) {
+                if (board.fire(random.nextInt(size), random.nextInt(size)).isFired()) {
+                    fired++;
+                }
+            }
+            long start = System.nanoTime();
+            PlacementEnumerator enumerator = new PlacementEnumerator(board);
+            long nanos = System.nanoTime() - start;
+            board.display(System.out);
+            for (int row = 0; row < size; row++) {
+                StringBuilder line = new StringBuilder();
+                for (int column = 0; column < size; column++) {
+                    line.append(String.format("%4.0f", 100 * enumerator.getProbability(row, column)));
+                }
+                System.out.println(line);
+            }
+            System.out.println(enumerator.getPlacementCount() + " layouts in " + nanos / 1000000 + " ms");
+        } catch (BattleshipException e) {
+            System.out.println(e.getMessage());
+        } catch (NumberFormatException e) {
+            System.out.println(Battleship.BAD_COMMAND);
+        }
+    }
+
+    private int square(int row, int column) {
+        return transposed ? column * columns + row : row * columns + column;
+    }
+
+    /**
+     * Run the forward and backward passes, filling in counts.
+     * @return the number of layouts
+     */
+    private long enumerate() {
+        Moves[] moves = new Moves[rows * columns];
+        for (int square = 0; square < moves.length; square++) {
+            moves[square] = new Moves(square);
+        }
+        Layer[] rowStarts = new Layer[rows + 1];
+        Layer layer = new Layer(1);
+        layer.append(0, 1);
+        layer.bucketStart = new int[buckets + 1];
+        Arrays.fill(layer.bucketStart, 1, buckets + 1, 1);
+        for (int row = 0; row < rows; row++) {
+            rowStarts[row] = layer;
+            for (int column = 0; column < columns; column++) {
+                Layer next = forward(layer, moves[row * columns + column]);
+                if (column > 0) {
+                    spares.push(layer);
+                }
+                layer = next;
+            }
+        }
+        rowStarts[rows] = layer;
+        int end = Arrays.binarySearch(layer.keys, 0, layer.size, complete);
+        if (end < 0) {
+            return 0;
+        }
+        long found = layer.values[end];
+        long[] after = new long[layer.size];
+        after[end] = 1;
+        long[] spare = after;
+        int lastRow = isSymmetric() ? rows / 2 : 0;
+        Layer[] rowLayers = new Layer[columns + 1];
+        for (int row = rows - 1; row >= lastRow; row--) {
+            rowLayers[0] = rowStarts[row];
+            for (int column = 0; column < columns - 1; column++) {
+                rowLayers[column + 1] = forward(rowLayers[column], moves[row * columns + column]);
+            }
+            rowLayers[columns] = rowStarts[row + 1];
+            for (int column = columns - 1; column >= 0; column--) {
+                Layer states = rowLayers[column];
+                long[] before = spare != after && spare.length >= states.size ? spare : new long[states.size];
+                int[] ranges = split(states);
+                counts[row * columns + column] = pool.invoke(new Backward(states, before, rowLayers[column + 1], after,
+                        moves[row * columns + column], ranges, 0, ranges.length - 1));
+                spare = after;
+                after = before;
+            }
+            for (int column = 1; column <= columns; column++) {
+                spares.push(rowLayers[column]);
+            }
+            rowStarts[row + 1] = null;
+        }
+        for (int square = 0; square < lastRow * columns; square++) {
+            counts[square] = counts[counts.length - 1 - square];
+        }
+        return found;
+    }
+
+    /**
+     * @return whether the board looks the same turned half way round
+     */
+    private boolean isSymmetric() {
+        for (int square = 0, opposite = knowledge.length - 1; square < opposite; square++, opposite--) {
+            if (knowledge[square] != knowledge[opposite]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The states after a square, from the states before it, written into a
+     * spare state set when one is big enough.
+     */
+    private Layer forward(Layer from, Moves moves) {
+        int[] ranges = split(from);
+        int count = ranges.length - 1;
+        if (runs.length < count) {
+            int had = runs.length;
+            runs = Arrays.copyOf(runs, count);
+            for (int range = had; range < count; range++) {
+                runs[range] = new Layer[buckets];
+                for (int bucket = 0; bucket < buckets; bucket++) {
+                    runs[range][bucket] = new Layer(16);
+                }
+            }
+        }
+        pool.invoke(new Forward(from, moves, ranges, 0, count));
+        int size = 0;
+        for (int range = 0; range < count; range++) {
+            for (Layer run : runs[range]) {
+                size += run.size;
+            }
+        }
+        Layer next = spares.poll();
+        if (next == null || next.keys.length < size) {
+            next = new Layer(Math.max(size, 1));
+            next.bucketStart = new int[buckets + 1];
+        }
+        next.size = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            next.bucketStart[bucket] = next.size;
+            for (int range = 0; range < count; range++) {
+                Layer run = runs[range][bucket];
+                System.arraycopy(run.keys, 0, next.keys, next.size, run.size);
+                System.arraycopy(run.values, 0, next.values, next.size, run.size);
+                next.size += run.size;
+            }
+        }
+        next.bucketStart[buckets] = next.size;
+        return next;
+    }
+
+    /**
+     * Cut a state set into ranges of whole groups for the workers.
+     * @return the start of each range, then the size of the set
+     */
+    private int[] split(Layer layer) {
+        int grain = Math.max(4096, layer.size / (4 * pool.getParallelism()));
+        int pieces = Math.max(1, layer.size / grain);
+        int[] ranges = new int[pieces + 1];
+        int count = 1;
+        for (int piece = 1; piece < pieces; piece++) {
+            int start = Math.max((int) ((long) layer.size * piece / pieces), ranges[count - 1] + 1);
+            while (start < layer.size && layer.keys[start] >>> groupShift == layer.keys[start - 1] >>> groupShift) {
+                start++;
+            }
+            if (start < layer.size) {
+                ranges[count++] = start;
+            }
+        }
+        ranges[count++] = layer.size;
+        return Arrays.copyOf(ranges, count);
+    }
+
+    /**
+     * @return the bits of a state below its group, but for the column decided
+     *         last, which is where a board one column wide keeps it
+     */
+    private long lowMask() {
+        return (1L << blockShift) - 1 & ~(reachMask << topShift);
+    }
+
+    /**
+     * The ways one square can be decided.
+     *
+     * A state whose current column's reach covers the square can only
+     * continue down, one whose horizontal reach covers it can only continue
+     * right, and any other state can leave the square as water or start a
+     * ship of any length it has left to place.
+     */
+    private final class Moves {
+
+        /**
+         * False if the square is a miss or sunk, so no ship afloat may cover it.
+         */
+        private final boolean open;
+
+        /**
+         * False if the square is a hit, so it must be covered.
+         */
+        private final boolean water;
+
+        private int starts;
+
+        /**
+         * Starting a ship adds delta[k] to the low bits of a state whose
+         * placed-count field[k] is not yet full[k].
+         */
+        private final int[] delta;
+
+        private final long[] field;
+
+        private final long[] full;
+
+        Moves(int square) {
+            int row = square / columns;
+            int column = square - row * columns;
+            open = knowledge[square] != BLOCKED;
+            water = knowledge[square] != HIT;
+            delta = new int[2 * lengths.length];
+            field = new long[delta.length];
+            full = new long[delta.length];
+            for (int i = 0; open && i < lengths.length; i++) {
+                int length = lengths[i];
+                if (column + length <= columns) {
+                    start(i, (length - 1) << horizontalShift);
+                }
+                if (length > 1 && row + length <= rows) {
+                    start(i, (length - 1) << blockShift);
+                }
+            }
+        }
+
+        private void start(int i, int reach) {
+            delta[starts] = (1 << placedShift[i]) + reach;
+            field[starts] = placedMask[i] << placedShift[i];
+            full[starts] = (long) fleet[i] << placedShift[i];
+            starts++;
+        }
+    }
+
+    /**
+     * A worker's table, indexed by the low bits of a state after a square:
+     * the reach of the column just decided, then the bits below the group.
+     * The forward pass adds up a group's successors in it, marking the
+     * entries used in bits and the words of bits used in summary, and leaves
+     * it empty again when they are read back.
+     */
+    private final class Table {
+
+        private final long[] ways = new long[1 << groupShift];
+
+        private final long[] bits = new long[Math.max(1, ways.length >>> 6)];
+
+        private final long[] summary = new long[Math.max(1, bits.length >>> 6)];
+
+        void add(int slot, long reached) {
+            ways[slot] = Math.addExact(ways[slot], reached);
+            bits[slot >>> 6] |= 1L << slot;
+            summary[slot >>> 12] |= 1L << (slot >>> 6);
+        }
+
+        /**
+         * Append the group's successors to the runs, in order, and empty the table.
+         */
+        void drain(long group, Layer[] runs) {
+            long groupBits = group << blockShift;
+            long lowMask = lowMask();
+            for (int i = 0; i < summary.length; i++) {
+                long words = summary[i];
+                summary[i] = 0;
+                while (words != 0) {
+                    int word = i << 6 | Long.numberOfTrailingZeros(words);
+                    words &= words - 1;
+                    long used = bits[word];
+                    bits[word] = 0;
+                    while (used != 0) {
+                        int slot = word << 6 | Long.numberOfTrailingZeros(used);
+                        used &= used - 1;
+                        int bucket = slot >>> blockShift;
+                        runs[bucket].append((long) bucket << topShift | groupBits | (slot & lowMask), ways[slot]);
+                        ways[slot] = 0;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the states after a square from the ranges [low, high) of the
+     * states before it into the ranges' runs, one sorted run per bucket.
+     */
+    private class Forward extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Layer before;
+        private final Moves moves;
+        private final int[] ranges;
+        private final int low;
+        private final int high;
+
+        Forward(Layer before, Moves moves, int[] ranges, int low, int high) {
+            this.before = before;
+            this.moves = moves;
+            this.ranges = ranges;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected void compute() {
+            if (high - low > 1) {
+                int middle = (low + high) >>> 1;
+                invokeAll(new Forward(before, moves, ranges, low, middle),
+                        new Forward(before, moves, ranges, middle, high));
+                return;
+            }
+            int from = ranges[low];
+            int to = ranges[low + 1];
+            Layer[] out = runs[low];
+            for (Layer run : out) {
+                run.size = 0;
+            }
+            Table table = tables.get();
+            long[] keys = before.keys;
+            long[] values = before.values;
+            long sameMask = (1L << currentShift) - 1;
+            int horizontalStep = 1 << horizontalShift;
+            for (int i = from; i < to; ) {
+                long group = keys[i] >>> groupShift;
+                for (; i < to && keys[i] >>> groupShift == group; i++) {
+                    long state = keys[i];
+                    long reached = values[i];
+                    int slot = (int) (((state >>> blockShift) & reachMask) << currentShift | (state & sameMask));
+                    long down = (state >>> currentShift) & reachMask;
+                    long right = (state >>> horizontalShift) & reachMask;
+                    if (down != 0) {
+                        if (moves.open && right == 0) {
+                            table.add(slot | (int) (down - 1) << blockShift, reached);
+                        }
+                    } else if (right != 0) {
+                        if (moves.open) {
+                            table.add(slot - horizontalStep, reached);
+                        }
+                    } else {
+                        if (moves.water) {
+                            table.add(slot, reached);
+                        }
+                        for (int k = 0; k < moves.starts; k++) {
+                            if ((state & moves.field[k]) != moves.full[k]) {
+                                table.add(slot + moves.delta[k], reached);
+                            }
+                        }
+                    }
+                }
+                table.drain(group, out);
+            }
+        }
+    }
+
+    /**
+     * Works out, for the ranges [low, high) of the states before a square,
+     * the number of ways to finish from each, and returns the number of
+     * layouts in which the square is covered.
+     */
+    private class Backward extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Layer states;
+        private final long[] finishes;
+        private final Layer next;
+        private final long[] nextFinishes;
+        private final Moves moves;
+        private final int[] ranges;
+        private final int low;
+        private final int high;
+
+        Backward(Layer states, long[] finishes, Layer next, long[] nextFinishes, Moves moves,
+                 int[] ranges, int low, int high) {
+            this.states = states;
+            this.finishes = finishes;
+            this.next = next;
+            this.nextFinishes = nextFinishes;
+            this.moves = moves;
+            this.ranges = ranges;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        protected Long compute() {
+            if (high - low > 1) {
+                int middle = (low + high) >>> 1;
+                Backward left = new Backward(states, finishes, next, nextFinishes, moves, ranges, low, middle);
+                left.fork();
+                long right = new Backward(states, finishes, next, nextFinishes, moves, ranges, middle, high).compute();
+                return Math.addExact(left.join(), right);
+            }
+            int from = ranges[low];
+            int to = ranges[low + 1];
+            long[] ways = tables.get().ways;
+            long[] keys = states.keys;
+            long sameMask = (1L << currentShift) - 1;
+            long lowMask = lowMask();
+            int horizontalStep = 1 << horizontalShift;
+            // per bucket, where the group's part of the next states starts and ends
+            int[] first = new int[buckets];
+            int[] last = new int[buckets];
+            for (int bucket = 0; bucket < buckets && from < to; bucket++) {
+                long key = (long) bucket << topShift | (keys[from] >>> groupShift) << blockShift;
+                int found = Arrays.binarySearch(next.keys, next.bucketStart[bucket], next.bucketStart[bucket + 1], key);
+                last[bucket] = found < 0 ? -found - 1 : found;
+            }
+            long covered = 0;
+            for (int i = from; i < to; ) {
+                long group = keys[i] >>> groupShift;
+                long groupBits = group << blockShift;
+                for (int bucket = 0; bucket < buckets; bucket++) {
+                    int j = last[bucket];
+                    first[bucket] = j;
+                    int end = next.bucketStart[bucket + 1];
+                    long prefix = (long) bucket << topShift | groupBits;
+                    for (; j < end && (next.keys[j] & ~lowMask) == prefix; j++) {
+                        ways[bucket << blockShift | (int) (next.keys[j] & lowMask)] = nextFinishes[j];
+                    }
+                    last[bucket] = j;
+                }
+                for (; i < to && keys[i] >>> groupShift == group; i++) {
+                    long state = keys[i];
+                    int slot = (int) (((state >>> blockShift) & reachMask) << currentShift | (state & sameMask));
+                    long down = (state >>> currentShift) & reachMask;
+                    long right = (state >>> horizontalShift) & reachMask;
+                    long all = 0;
+                    long covering = 0;
+                    if (down != 0) {
+                        if (moves.open && right == 0) {
+                            covering = ways[slot | (int) (down - 1) << blockShift];
+                        }
+                    } else if (right != 0) {
+                        if (moves.open) {
+                            covering = ways[slot - horizontalStep];
+                        }
+                    } else {
+                        if (moves.water) {
+                            all = ways[slot];
+                        }
+                        for (int k = 0; k < moves.starts; k++) {
+                            if ((state & moves.field[k]) != moves.full[k]) {
+                                covering = Math.addExact(covering, ways[slot + moves.delta[k]]);
+                            }
+                        }
+                    }
+                    finishes[i] = Math.addExact(all, covering);
+                    covered = Math.addExact(covered, Math.multiplyExact(states.values[i], covering));
+                }
+                for (int bucket = 0; bucket < buckets; bucket++) {
+                    for (int j = first[bucket]; j < last[bucket]; j++) {
+                        ways[bucket << blockShift | (int) (next.keys[j] & lowMask)] = 0;
+                    }
+                }
+            }
+            return covered;
+        }
+    }
+
+    /**
+     * The states before one square, in increasing order, with the number of
+     * ways to reach each. The states of each bucket, the reach of the column
+     * decided last, start at bucketStart.
+     */
+    private static final class Layer {
+
+        private long[] keys;
+
+        private long[] values;
+
+        private int size;
+
+        private int[] bucketStart;
+
+        Layer(int capacity) {
+            keys = new long[capacity];
+            values = new long[capacity];
+        }
+
+        /**
+         * Add a state greater than every state so far.
+         */
+        void append(long key, long value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            keys[size] = key;
+            values[size++] = value;
+        }
+    }
+}
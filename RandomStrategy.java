@@ -0,0 +1,44 @@
+import java.util.SplittableRandom;
+
+/**
+ * Shoots every square exactly once, in a random order.
+ * This is the baseline other strategies are compared against.
+ */
+public class RandomStrategy implements ShootingStrategy {
+
+    private int[] order = new int[0];
+
+    private int next;
+
+    @Override
+    public String getName() {
+        return "random";
+    }
+
+    @Override
+    public void newGame(Board board, SplittableRandom random) {
+        int squares = board.getWidth() * board.getHeight();
+        if (order.length != squares) {
+            order = new int[squares];
+        }
+        for (int i = 0; i < squares; i++) {
+            order[i] = i;
+        }
+        for (int i = squares - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        next = 0;
+    }
+
+    @Override
+    public int nextShot() {
+        return order[next++];
+    }
+
+    @Override
+    public void shotResult(int row, int column, boolean hit, boolean sunk) {
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+
+/**
+ * Plays a recorded game back, and jumps to any move without starting over.
+ *
+ * Building a Replay plays the game through once and keeps a copy of the
+ * board every checkpoint interval moves. Seeking to move N copies the last
+ * checkpoint at or before N and fires at most interval - 1 more shots, so a
+ * seek costs the same wherever it lands. Boards are headless, so nothing
+ * is printed while the shots are fired.
+ *
+ * For going through many games once, play(GameRecording) fires every shot
+ * on a fresh board with no checkpoints at all.
+ */
+public class Replay {
+
+    /**
+     * Moves between checkpoints when none is given.
+     */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 32;
+
+    private final GameRecording recording;
+
+    private final int interval;
+
+    /**
+     * checkpoints[k] is the board after the first k * interval shots.
+     */
+    private final Board[] checkpoints;
+
+    /**
+     * @see #Replay(GameRecording, int)
+     */
+    public Replay(GameRecording recording) throws BattleshipException {
+        this(recording, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * @param recording the game
+     * @param interval moves between checkpoints
+     * @throws BattleshipException if the recording is not a legal game
+     */
+    public Replay(GameRecording recording, int interval) throws BattleshipException {
+        if (interval < 1) {
+            throw new IllegalArgumentException("checkpoint interval must be at least 1");
+        }
+        this.recording = recording;
+        this.interval = interval;
+        int moves = recording.getShotCount();
+        this.checkpoints = new Board[moves / interval + 1];
+        Board board = recording.newBoard();
+        checkpoints[0] = board.copy();
+        for (int k = 1; k < checkpoints.length; k++) {
+            recording.play(board, (k - 1) * interval, k * interval);
+            checkpoints[k] = board.copy();
+        }
+    }
+
+    /**
+     * @return the number of moves in the game
+     */
+    public int getMoveCount() {
+        return recording.getShotCount();
+    }
+
+    /**
+     * The board as it was after a number of moves.
+     * @param move 0 for the board before the first shot, up to getMoveCount()
+     * @return a new board that the caller may go on playing
+     */
+    public Board seek(int move) {
+        if (move < 0 || move > getMoveCount()) {
+            throw new IndexOutOfBoundsException(move);
+        }
+        int k = move / interval;
+        Board board = checkpoints[k].copy();
+        try {
+            recording.play(board, k * interval, move);
+        } catch (BattleshipException e) {
+            throw new IllegalStateException("recording changed since it was checked", e);
+        }
+        return board;
+    }
+
+    /**
+     * Play a whole recording at full speed.
+     * @param recording the game
+     * @return the board after the last shot
+     * @throws BattleshipException if the recording is not a legal game
+     */
+    public static Board play(GameRecording recording) throws BattleshipException {
+        Board board = recording.newBoard();
+        recording.play(board, 0, recording.getShotCount());
+        return board;
+    }
+
+    /**
+     * Replay a file of recordings, or show one game at one move.
+     * Usage: java Replay recordings [game move]
+     * Without a game and move, every game is played through and summarized.
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length != 1 && args.length != 3) {
+            System.out.println(Battleship.BAD_ARG_COUNT);
+            return;
+        }
+        try (GameRecording.Reader reader = new GameRecording.Reader(Paths.get(args[0]))) {
+            if (args.length == 3) {
+                int game = Integer.parseInt(args[1]);
+                GameRecording recording = reader.next();
+                for (int i = 0; i < game && recording != null; i++) {
+                    recording = reader.next();
+                }
+                if (recording == null) {
+                    System.out.println("No game " + game + " in " + args[0]);
+                    return;
+                }
+                new Replay(recording).seek(Integer.parseInt(args[2])).display(System.out);
+                return;
+            }
+            long start = System.nanoTime();
+            int games = 0;
+            int won = 0;
+            long shots = 0;
+            for (GameRecording recording; (recording = reader.next()) != null; ) {
+                Board board = play(recording);
+                games++;
+                shots += board.getShotCount();
+                if (board.allSunk()) {
+                    won++;
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.println(games + " games (" + won + " won), " + shots + " shots, "
+                    + String.format("%.2f", games == 0 ? 0 : (double) shots / games) + " shots per game, "
+                    + (long) (games * 1e9 / Math.max(nanos, 1)) + " games/sec");
+        } catch (NoSuchFileException e) {
+            System.out.println(Battleship.MISSING_SETUP_FILE + " " + args[0]);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        } catch (BattleshipException e) {
+            System.out.println("Illegal recording: " + e.getMessage());
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            System.out.println(Battleship.BAD_COMMAND);
+        }
+    }
+}
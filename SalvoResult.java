@@ -0,0 +1,104 @@
+import java.util.Arrays;
+
+/**
+ * What a salvo did: the result of each of its shots, in the order they were
+ * given, and totals for the whole salvo.
+ *
+ * A SalvoResult can be passed back to Board#fireAll to be filled in again,
+ * so a loop of salvos allocates nothing once it has seen its largest salvo.
+ */
+public class SalvoResult {
+
+    private ShotResult[] results = new ShotResult[8];
+
+    private int size;
+
+    private int fired;
+
+    private int hits;
+
+    private int sunk;
+
+    private boolean gameOver;
+
+    /**
+     * @return the number of shots in the salvo
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i the shot's position in the salvo
+     * @return what the shot did; a square given twice in one salvo is REPEATED the second time
+     */
+    public ShotResult get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return results[i];
+    }
+
+    /**
+     * @return how many shots were fired, leaving out repeated and off-board squares
+     */
+    public int getFired() {
+        return fired;
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return how many ships the salvo sank
+     */
+    public int getSunk() {
+        return sunk;
+    }
+
+    /**
+     * @return true if the salvo sank the last ship of the fleet
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Start again for a salvo of the given size.
+     */
+    void clear(int capacity) {
+        if (results.length < capacity) {
+            results = new ShotResult[Math.max(capacity, results.length * 2)];
+        } else {
+            Arrays.fill(results, 0, size, null);
+        }
+        size = 0;
+        fired = 0;
+        hits = 0;
+        sunk = 0;
+        gameOver = false;
+    }
+
+    void add(ShotResult result) {
+        results[size++] = result;
+        if (result.isFired()) {
+            fired++;
+        }
+        if (result.isHit()) {
+            hits++;
+        }
+        if (result.isSunk()) {
+            sunk++;
+        }
+        if (result == ShotResult.GAME_OVER) {
+            gameOver = true;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SalvoResult{shots=" + size + ", fired=" + fired + ", hits=" + hits + ", sunk=" + sunk
+                + (gameOver ? ", game over" : "") + '}';
+    }
+}
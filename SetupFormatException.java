@@ -0,0 +1,24 @@
+/**
+ * A BattleshipException that informs the program that a setup text file is malformed.
+ * It records where in the file the problem was found.
+ */
+public class SetupFormatException extends BattleshipException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Line number in the file, starting at 1.
+     */
+    public final int line;
+
+    /**
+     * Column number in the line, starting at 1.
+     */
+    public final int column;
+
+    public SetupFormatException(int line, int column, String problem) {
+        super(Battleship.BAD_CONFIG_FILE + " at line " + line + ", column " + column + ": " + problem);
+        this.line = line;
+        this.column = column;
+    }
+}
@@ -0,0 +1,260 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads setup text files one byte at a time from a buffered channel.
+ *
+ * The first line holds the number of rows and columns, and every other line
+ * holds one ship: its upper row, left column, HORIZONTAL or VERTICAL (in any
+ * case), and its length, separated by spaces or tabs. Ships are passed to a
+ * Handler as soon as their line has been read, so a file of any size is parsed
+ * in constant memory and without creating strings. A malformed line stops the
+ * parse with a SetupFormatException giving its line and column.
+ */
+public class SetupParser {
+
+    /**
+     * Receives the contents of a setup file as it is parsed.
+     */
+    public interface Handler {
+
+        /**
+         * Called once, for the first line.
+         * @param rows number of rows on the board
+         * @param columns number of columns on the board
+         * @throws BattleshipException to stop parsing
+         */
+        void dimensions(int rows, int columns) throws BattleshipException;
+
+        /**
+         * Called for every ship line, in file order.
+         * @param row the uppermost row that the ship is on
+         * @param column the leftmost column that the ship is on
+         * @param orientation the ship's orientation
+         * @param length how many cells the ship is on
+         * @throws BattleshipException to stop parsing
+         */
+        void ship(int row, int column, Ship.Orientation orientation, int length) throws BattleshipException;
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int END = -1;
+
+    private static final byte[] HORIZONTAL = "horizontal".getBytes();
+
+    private static final byte[] VERTICAL = "vertical".getBytes();
+
+    private final ReadableByteChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final byte[] word = new byte[16];
+
+    private boolean exhausted;
+
+    private int line = 1;
+
+    private int column = 1;
+
+    private SetupParser(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.buffer.flip();
+    }
+
+    /**
+     * Parse a setup file.
+     * @param path the setup file
+     * @param handler receives the dimensions and the ships
+     * @throws IOException if the file cannot be read
+     * @throws SetupFormatException if the file is malformed
+     * @throws BattleshipException if the handler rejects a line
+     */
+    public static void parse(Path path, Handler handler) throws IOException, BattleshipException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            parse(channel, handler);
+        }
+    }
+
+    /**
+     * Parse a setup file from a channel.
+     * @param channel the setup file's contents
+     * @param handler receives the dimensions and the ships
+     * @throws IOException if the channel cannot be read
+     * @throws SetupFormatException if the contents are malformed
+     * @throws BattleshipException if the handler rejects a line
+     */
+    public static void parse(ReadableByteChannel channel, Handler handler) throws IOException, BattleshipException {
+        int bufferSize = BUFFER_SIZE;
+        if (channel instanceof SeekableByteChannel) {
+            // a small file does not need a large buffer; one spare byte sees the end in the same read
+            SeekableByteChannel file = (SeekableByteChannel) channel;
+            bufferSize = (int) Math.max(1, Math.min(BUFFER_SIZE, file.size() - file.position() + 1));
+        }
+        new SetupParser(channel, bufferSize).parse(handler);
+    }
+
+    private void parse(Handler handler) throws IOException, BattleshipException {
+        if (peek() == END) {
+            throw error(column, "missing board dimensions");
+        }
+        startLine();
+        int rows = number("the number of rows", 1);
+        int columns = number("the number of columns", 1);
+        endLine();
+        handler.dimensions(rows, columns);
+        while (peek() != END) {
+            startLine();
+            int row = number("the ship's row", Integer.MIN_VALUE);
+            int column = number("the ship's column", Integer.MIN_VALUE);
+            Ship.Orientation orientation = orientation();
+            int length = number("the ship's length", Integer.MIN_VALUE);
+            endLine();
+            handler.ship(row, column, orientation, length);
+        }
+    }
+
+    private void startLine() throws IOException, SetupFormatException {
+        skipSpaces();
+        int c = peek();
+        if (c == '\n' || c == END) {
+            throw error(column, "blank line");
+        }
+    }
+
+    private void endLine() throws IOException, SetupFormatException {
+        skipSpaces();
+        int c = peek();
+        if (c == '\n') {
+            advance();
+            line++;
+            column = 1;
+        } else if (c != END) {
+            throw error(column, "unexpected text at end of line");
+        }
+    }
+
+    /**
+     * Read a whole decimal number, with an optional sign, that is at least min.
+     */
+    private int number(String what, int min) throws IOException, SetupFormatException {
+        skipSpaces();
+        int start = column;
+        int c = peek();
+        boolean negative = c == '-';
+        if (c == '-' || c == '+') {
+            advance();
+            c = peek();
+        }
+        if (!isDigit(c)) {
+            throw error(start, "expected " + what);
+        }
+        long value = 0;
+        while (isDigit(c)) {
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE + 1L) {
+                throw error(start, what + " is too large");
+            }
+            advance();
+            c = peek();
+        }
+        if (!isSeparator(c)) {
+            throw error(start, "expected " + what);
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw error(start, what + " is too large");
+        }
+        if (value < min) {
+            throw error(start, what + " must be at least " + min);
+        }
+        return (int) value;
+    }
+
+    private Ship.Orientation orientation() throws IOException, SetupFormatException {
+        skipSpaces();
+        int start = column;
+        int length = 0;
+        int c = peek();
+        while (!isSeparator(c)) {
+            if (length < word.length) {
+                word[length] = (byte) (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+            }
+            length++;
+            advance();
+            c = peek();
+        }
+        if (matches(HORIZONTAL, length)) {
+            return Ship.Orientation.HORIZONTAL;
+        }
+        if (matches(VERTICAL, length)) {
+            return Ship.Orientation.VERTICAL;
+        }
+        throw error(start, "expected HORIZONTAL or VERTICAL");
+    }
+
+    private boolean matches(byte[] expected, int length) {
+        if (length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (word[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipSpaces() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\f' || c == 0x0B) {
+            advance();
+            c = peek();
+        }
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSeparator(int c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\f' || c == 0x0B || c == '\n' || c == END;
+    }
+
+    /**
+     * @return the next byte without consuming it, or END at the end of the input
+     */
+    private int peek() throws IOException {
+        if (!buffer.hasRemaining()) {
+            if (exhausted) {
+                return END;
+            }
+            buffer.clear();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            if (read < 0) {
+                exhausted = true;
+                return END;
+            }
+        }
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    private void advance() {
+        buffer.position(buffer.position() + 1);
+        column++;
+    }
+
+    private SetupFormatException error(int column, String problem) {
+        return new SetupFormatException(line, column, problem);
+    }
+}
@@ -1,4 +1,6 @@
 import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 /**
  * A single ship in a Battleship game
@@ -9,14 +11,51 @@ public class Ship implements Serializable {
 
     private int numOfHits;
 
+    private int row;
+
+    private int column;
+
+    private Orientation orientation;
+
     public static final String SUNK_MESSAGE = "A battleship has been sunk!";
 
+    /**
+     * Atomic access to numOfHits, for ships on a ConcurrentBoard.
+     */
+    private static final VarHandle NUM_OF_HITS;
+
+    static {
+        try {
+            NUM_OF_HITS = MethodHandles.lookup().findVarHandle(Ship.class, "numOfHits", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     public int getLength() {
         return length;
     }
 
     public int getNumOfHits() {
-        return numOfHits;
+        return (int) NUM_OF_HITS.getAcquire(this);
+    }
+
+    /**
+     * @return the uppermost row that the ship is on
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * @return the leftmost column that the ship is on
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    public Orientation getOrientation() {
+        return orientation;
     }
 
     /**
@@ -53,6 +92,8 @@ public class Ship implements Serializable {
      * Initialize this new ship's state. Tell the Board object
      * and each involved Cell object about the existence of this
      * ship by trying to put the ship at each applicable Cell.
+     * Every cell is checked first, so a ship that does not fit
+     * leaves the board as it was.
      *
      * @param board  holds a collection of ships
      * @param uRow   the uppermost row that the ship is on
@@ -68,8 +109,18 @@ public class Ship implements Serializable {
     public Ship(Board board, int uRow, int lCol, Orientation ort, int length) throws OverlapException, OutOfBoundsException {
 
         this.length = length;
+        this.row = uRow;
+        this.column = lCol;
+        this.orientation = ort;
         int x=0,y=0;
 
+        for (int i = 0; i < length; i++) {
+            x=i*ort.rDelta;
+            y=i*ort.cDelta;
+            if (board.getShip(uRow +x, lCol +y) != null) {
+                throw new OverlapException(uRow +x, lCol +y);
+            }
+        }
         Cell cell;
         for (int i = 0; i < length; i++) {
                 x=i*ort.rDelta;
@@ -80,21 +131,74 @@ public class Ship implements Serializable {
         board.addShip(this);
     }
 
-    private Ship(int length) {
+    Ship(int length) {
+        this.length = length;
+    }
+
+    /**
+     * Move a ship that is not on any board and take back its hits, for Board#placeShip.
+     */
+    void reseat(int row, int column, Orientation ort, int length) {
+        this.row = row;
+        this.column = column;
+        this.orientation = ort;
         this.length = length;
+        repair();
+    }
+
+    /**
+     * Take back one hit, for Board#undo.
+     */
+    void unhit() {
+        if (numOfHits > 0) {
+            numOfHits--;
+        }
+    }
+
+    /**
+     * Take back every hit, for Board#reset.
+     */
+    void repair() {
+        NUM_OF_HITS.setRelease(this, 0);
+    }
+
+    /**
+     * @return a ship in the same place with the same hits, not on any board
+     */
+    Ship copy() {
+        Ship copy = new Ship(length);
+        copy.numOfHits = numOfHits;
+        copy.row = row;
+        copy.column = column;
+        copy.orientation = orientation;
+        return copy;
     }
 
     /**
-     * Hit the ship
-     * Display Sunk Message if the ship is sunk
+     * Hit the ship.
+     * The Board that resolved the shot displays the Sunk Message if the ship is sunk.
      */
     public void hit() {
         if (!isSunk()) {
             numOfHits++;
         }
-        if(isSunk()){
-        System.out.println(SUNK_MESSAGE);
-        }
+    }
+
+    /**
+     * Hit the ship when other threads may be hitting it too.
+     * Of all the hits on a ship, exactly one sinks it.
+     * @return the ship's hits counting this one, which equals its length if
+     *         this hit sank it, or 0 if it was already sunk and the hit changed nothing
+     */
+    int hitAtomically() {
+        int hits;
+        do {
+            hits = (int) NUM_OF_HITS.getVolatile(this);
+            if (hits >= length) {
+                return 0;
+            }
+        } while (!NUM_OF_HITS.compareAndSet(this, hits, hits + 1));
+        return hits + 1;
     }
 
     /**
@@ -102,7 +206,7 @@ public class Ship implements Serializable {
      * @return
      */
     public boolean isSunk() {
-        if (numOfHits == length) {
+        if (getNumOfHits() == length) {
             return true;
         } else {
             return false;
@@ -0,0 +1,43 @@
+import java.util.SplittableRandom;
+
+/**
+ * A computer player that chooses where to shoot on a Board.
+ * One strategy instance plays one game at a time; the Simulation
+ * creates a separate instance for every worker thread.
+ *
+ * Squares are identified by their row-major index,
+ * row * board.getHeight() + column.
+ */
+public interface ShootingStrategy {
+
+    /**
+     * @return a short name used in reports
+     */
+    String getName();
+
+    /**
+     * Start a new game against the given board.
+     * A strategy may only look at what a player could see: the board's
+     * dimensions, its ships' lengths, and Cell#displayHitStatus().
+     * @param board the board to shoot at
+     * @param random source of randomness for this game
+     */
+    void newGame(Board board, SplittableRandom random);
+
+    /**
+     * Choose the next square to shoot. A strategy never returns the same
+     * square twice in one game, even when it is asked for several shots
+     * before hearing how any of them went, as in a salvo.
+     * @return the row-major index of the square
+     */
+    int nextShot();
+
+    /**
+     * Learn the outcome of a shot returned by nextShot.
+     * @param row row number of the shot
+     * @param column column number of the shot
+     * @param hit true if a ship was hit
+     * @param sunk true if the hit sank the ship
+     */
+    void shotResult(int row, int column, boolean hit, boolean sunk);
+}
@@ -0,0 +1,61 @@
+/**
+ * What a shot did.
+ */
+public enum ShotResult {
+
+    /**
+     * The shot hit water.
+     */
+    MISS,
+
+    /**
+     * The shot hit a ship without sinking it.
+     */
+    HIT,
+
+    /**
+     * The shot sank a ship, and other ships are still afloat.
+     */
+    SUNK,
+
+    /**
+     * The shot sank the last ship afloat.
+     */
+    GAME_OVER,
+
+    /**
+     * The square had already been shot; nothing changed.
+     */
+    ALREADY_PLAYED,
+
+    /**
+     * The square was given earlier in the same salvo; nothing changed.
+     */
+    REPEATED,
+
+    /**
+     * The square is not on the board; nothing changed.
+     */
+    OUT_OF_BOUNDS;
+
+    /**
+     * @return true if the shot hit a ship
+     */
+    public boolean isHit() {
+        return this == HIT || this == SUNK || this == GAME_OVER;
+    }
+
+    /**
+     * @return true if the shot sank a ship
+     */
+    public boolean isSunk() {
+        return this == SUNK || this == GAME_OVER;
+    }
+
+    /**
+     * @return true if the shot was fired, that is, it landed on a square not shot before
+     */
+    public boolean isFired() {
+        return this != ALREADY_PLAYED && this != REPEATED && this != OUT_OF_BOUNDS;
+    }
+}
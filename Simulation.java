@@ -0,0 +1,292 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Plays many games of Battleship without a person and without console I/O,
+ * spread over every core with a fork-join pool.
+ *
+ * Each game gets its own random number generator seeded from the simulation
+ * seed and the game number, so a run is reproducible and every strategy
+ * in a run is played against the same sequence of boards. Each worker
+ * thread deals its games onto one board from a BoardPool rather than
+ * making a board per game.
+ */
+public class Simulation {
+
+    /**
+     * The standard fleet: carrier, battleship, cruiser, submarine and destroyer.
+     */
+    public static final int[] STANDARD_FLEET = {5, 4, 3, 3, 2};
+
+    /**
+     * Makes the board for one game.
+     */
+    public interface BoardFactory {
+        Board newBoard(SplittableRandom random) throws BattleshipException;
+
+        /**
+         * Make the board for the next game out of one this factory made
+         * before, reusing its storage where possible. The board must look as
+         * newBoard would have made it from the same random number generator.
+         * @see BoardPool
+         * @param board a board from this factory that the caller is done with
+         * @param random randomness for the new board
+         * @return the board for the next game, which by default is a new one
+         * @throws BattleshipException if the board cannot be made
+         */
+        default Board reuseBoard(Board board, SplittableRandom random) throws BattleshipException {
+            return newBoard(random);
+        }
+    }
+
+    private final BoardPool boards;
+
+    private final ForkJoinPool pool;
+
+    public Simulation(BoardFactory boards) {
+        this(boards, ForkJoinPool.commonPool());
+    }
+
+    public Simulation(BoardFactory boards, ForkJoinPool pool) {
+        this.boards = new BoardPool(boards);
+        this.pool = pool;
+    }
+
+    /**
+     * Play a number of games with one strategy.
+     * @param strategies makes one strategy instance per worker
+     * @param games how many games to play
+     * @param seed seed for the boards and the strategy's choices
+     * @return shots-to-win statistics and throughput
+     */
+    public SimulationReport run(Supplier<? extends ShootingStrategy> strategies, int games, long seed) {
+        long start = System.nanoTime();
+        int threshold = Math.max(1, games / (pool.getParallelism() * 8));
+        SimulationReport report = pool.invoke(new Games(strategies, seed, 0, games, threshold));
+        report.setElapsedNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    /**
+     * Play the same games with each of several strategies, one strategy after the other.
+     * @param strategies makes instances of each strategy
+     * @param games how many games each strategy plays
+     * @param seed seed for the boards and the strategies' choices
+     * @return one report per strategy, in the same order
+     */
+    public List<SimulationReport> runAll(List<Supplier<? extends ShootingStrategy>> strategies, int games, long seed) {
+        List<SimulationReport> reports = new ArrayList<>();
+        for (Supplier<? extends ShootingStrategy> strategy : strategies) {
+            reports.add(run(strategy, games, seed));
+        }
+        return reports;
+    }
+
+    /**
+     * Play the games that run() plays, one after the other on this thread,
+     * and write down each one as a GameRecording.
+     * @see Replay
+     * @param strategy the player
+     * @param games how many games to play
+     * @param seed seed for the boards and the strategy's choices
+     * @param out where the recordings are written
+     * @throws IOException if a recording cannot be written
+     */
+    public void record(ShootingStrategy strategy, int games, long seed, WritableByteChannel out) throws IOException {
+        for (int game = 0; game < games; game++) {
+            SplittableRandom random = gameRandom(seed, game);
+            Board board = newBoard(random, game);
+            playGame(board, strategy, random);
+            GameRecording.of(board).write(out);
+        }
+    }
+
+    private Board newBoard(SplittableRandom random, int game) {
+        try {
+            return boards.next(random);
+        } catch (BattleshipException e) {
+            throw new IllegalStateException("Could not set up game " + game, e);
+        }
+    }
+
+    private static SplittableRandom gameRandom(long seed, int game) {
+        return new SplittableRandom(seed + game * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Play one game to the end.
+     * @param board a fresh board with its fleet placed
+     * @param strategy the player
+     * @param random randomness for the strategy
+     * @return the number of shots it took to sink every ship
+     */
+    public static int playGame(Board board, ShootingStrategy strategy, SplittableRandom random) {
+        board.setHeadless(true);
+        strategy.newGame(board, random);
+        int columns = board.getHeight();
+        int squares = board.getWidth() * columns;
+        int shots = 0;
+        while (!board.allSunk()) {
+            if (shots == squares) {
+                throw new IllegalStateException(strategy.getName() + " ran out of squares to shoot");
+            }
+            int shot = strategy.nextShot();
+            int row = shot / columns;
+            int column = shot % columns;
+            ShotResult result = board.fire(row, column);
+            if (!result.isFired()) {
+                throw new IllegalStateException(strategy.getName() + " made an illegal shot at "
+                        + row + ", " + column + ": " + result);
+            }
+            shots++;
+            strategy.shotResult(row, column, result.isHit(), result.isSunk());
+        }
+        return shots;
+    }
+
+    /**
+     * Every game is played on a copy of the same fleet layout.
+     * @param template a board whose ships give the layout
+     * @return a factory of fresh boards with that layout
+     */
+    public static BoardFactory fromTemplate(Board template) {
+        int rows = template.getWidth();
+        int columns = template.getHeight();
+        List<Ship> ships = new ArrayList<>(template.getShips());
+        return new BoardFactory() {
+            @Override
+            public Board newBoard(SplittableRandom random) throws BattleshipException {
+                Board board = new Board(rows, columns);
+                for (Ship ship : ships) {
+                    board.placeShip(ship.getRow(), ship.getColumn(), ship.getOrientation(), ship.getLength());
+                }
+                return board;
+            }
+
+            /**
+             * Every board has the same layout, so only the shots need to go.
+             */
+            @Override
+            public Board reuseBoard(Board board, SplittableRandom random) {
+                board.reset();
+                return board;
+            }
+        };
+    }
+
+    /**
+     * Every game is played against a randomly placed fleet.
+     * @see FleetGenerator
+     * @param rows board rows
+     * @param columns board columns
+     * @param lengths the length of each ship
+     * @return a factory of fresh boards with random fleets
+     */
+    public static BoardFactory randomFleet(int rows, int columns, int... lengths) {
+        return new FleetGenerator(rows, columns, lengths);
+    }
+
+    /**
+     * Plays the games numbered [from, to), splitting the range until it is small.
+     */
+    private class Games extends RecursiveTask<SimulationReport> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Supplier<? extends ShootingStrategy> strategies;
+        private final long seed;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        Games(Supplier<? extends ShootingStrategy> strategies, long seed, int from, int to, int threshold) {
+            this.strategies = strategies;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected SimulationReport compute() {
+            if (to - from <= threshold) {
+                ShootingStrategy strategy = strategies.get();
+                SimulationReport report = null;
+                for (int game = from; game < to; game++) {
+                    SplittableRandom random = gameRandom(seed, game);
+                    Board board = newBoard(random, game);
+                    if (report == null) {
+                        report = new SimulationReport(strategy.getName(), board.getWidth() * board.getHeight());
+                    }
+                    report.record(playGame(board, strategy, random));
+                }
+                return report != null ? report : new SimulationReport(strategy.getName(), 0);
+            }
+            int middle = (from + to) >>> 1;
+            Games left = new Games(strategies, seed, from, middle, threshold);
+            left.fork();
+            SimulationReport right = new Games(strategies, seed, middle, to, threshold).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Simulate games with every built-in strategy.
+     * Usage: java Simulation (setup.txt | ROWSxCOLUMNS) [games] [seed]
+     * A setup file plays every game on its layout; ROWSxCOLUMNS plays random standard fleets.
+     * With -Dbattleship.record=file, every strategy's games are also recorded in the file.
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println(Battleship.MISSING_SETUP_FILE);
+            return;
+        }
+        try {
+            BoardFactory boards;
+            if (args[0].endsWith(".txt")) {
+                Battleship battleship = Battleship.readFromTxtFile(args[0]);
+                if (battleship == null) {
+                    return;
+                }
+                boards = fromTemplate(battleship.getBoard());
+            } else {
+                String[] dimensions = args[0].split("x");
+                boards = randomFleet(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]), STANDARD_FLEET);
+            }
+            int games = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+            Simulation simulation = new Simulation(boards);
+            List<Supplier<? extends ShootingStrategy>> strategies = List.of(RandomStrategy::new, HuntTargetStrategy::new, DensityStrategy::new);
+            for (SimulationReport report : simulation.runAll(strategies, games, seed)) {
+                System.out.println(report);
+            }
+            String recordings = System.getProperty("battleship.record");
+            if (recordings != null) {
+                try (FileChannel out = FileChannel.open(Paths.get(recordings), StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (Supplier<? extends ShootingStrategy> strategy : strategies) {
+                        simulation.record(strategy.get(), games, seed, out);
+                    }
+                } catch (IOException e) {
+                    System.out.println("Error writing recordings to " + recordings + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.out.println(Battleship.MISSING_SETUP_FILE + " " + args[0]);
+        } catch (BattleshipException e) {
+            System.out.println(e.getMessage());
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println(Battleship.BAD_CONFIG_FILE);
+        }
+    }
+}
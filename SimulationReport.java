@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * The results of simulating many games with one strategy:
+ * how many games were played, how fast, and how many shots each game took to win.
+ */
+public class SimulationReport {
+
+    private final String strategy;
+
+    private long games;
+
+    private long totalShots;
+
+    private int minShots = Integer.MAX_VALUE;
+
+    private int maxShots;
+
+    /**
+     * histogram[n] is the number of games that were won in n shots.
+     */
+    private long[] histogram;
+
+    private long elapsedNanos;
+
+    public SimulationReport(String strategy, int maxShots) {
+        this.strategy = strategy;
+        this.histogram = new long[maxShots + 1];
+    }
+
+    /**
+     * Record one finished game.
+     * @param shots the number of shots it took to sink every ship
+     */
+    public void record(int shots) {
+        games++;
+        totalShots += shots;
+        minShots = Math.min(minShots, shots);
+        maxShots = Math.max(maxShots, shots);
+        if (shots >= histogram.length) {
+            histogram = Arrays.copyOf(histogram, shots + 1);
+        }
+        histogram[shots]++;
+    }
+
+    /**
+     * Add the games of another report for the same strategy into this one.
+     * @param other the report to merge
+     * @return this report
+     */
+    public SimulationReport merge(SimulationReport other) {
+        games += other.games;
+        totalShots += other.totalShots;
+        minShots = Math.min(minShots, other.minShots);
+        maxShots = Math.max(maxShots, other.maxShots);
+        if (other.histogram.length > histogram.length) {
+            histogram = Arrays.copyOf(histogram, other.histogram.length);
+        }
+        for (int i = 0; i < other.histogram.length; i++) {
+            histogram[i] += other.histogram[i];
+        }
+        return this;
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public int getMinShots() {
+        return games == 0 ? 0 : minShots;
+    }
+
+    public int getMaxShots() {
+        return maxShots;
+    }
+
+    public double getMeanShots() {
+        return games == 0 ? 0 : (double) totalShots / games;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the smallest shot count that at least that percentage of games were won within
+     */
+    public int getPercentileShots(double percentile) {
+        long rank = (long) Math.ceil(games * percentile / 100.0);
+        long seen = 0;
+        for (int shots = 0; shots < histogram.length; shots++) {
+            seen += histogram[shots];
+            if (seen >= rank && seen > 0) {
+                return shots;
+            }
+        }
+        return maxShots;
+    }
+
+    /**
+     * @return a copy of the shots-to-win distribution, indexed by shot count
+     */
+    public long[] getHistogram() {
+        return Arrays.copyOf(histogram, maxShots + 1);
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-12s games=%d  games/sec=%.0f  shots: mean=%.2f min=%d p50=%d p90=%d p99=%d max=%d",
+                strategy, games, getGamesPerSecond(), getMeanShots(), getMinShots(),
+                getPercentileShots(50), getPercentileShots(90), getPercentileShots(99), getMaxShots());
+    }
+}
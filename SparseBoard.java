@@ -0,0 +1,430 @@
+import java.util.Arrays;
+
+/**
+ * A board for oceans far too big to store square by square.
+ *
+ * Only squares that hold a ship or have been shot are stored, in an
+ * open-addressing hash table keyed by the square's row-major index as a
+ * long, so rows and columns can each go up to Integer.MAX_VALUE and memory
+ * follows the number of ship sections and shots instead of the area.
+ * The shot log keeps long indexes for the same reason.
+ *
+ * display and update only draw the viewport, a window of the board that
+ * starts at the top left corner and can be moved with setViewport.
+ */
+public class SparseBoard extends Board {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Set in a square's entry once it has been hit; the other bits are its ship id.
+     */
+    private static final int HIT = 1 << 30;
+
+    private static final int ID = HIT - 1;
+
+    private static final long SANK = Long.MIN_VALUE;
+
+    private SquareMap squares = new SquareMap();
+
+    private long[] shots = new long[8];
+
+    private int shotCount;
+
+    private int viewRow;
+
+    private int viewColumn;
+
+    private int viewRows;
+
+    private int viewColumns;
+
+    /**
+     * @param rows number of rows
+     * @param columns number of columns
+     */
+    public SparseBoard(int rows, int columns) {
+        super(rows, columns, false);
+        if (rows < 0 || columns < 0) {
+            throw new IllegalArgumentException("negative board dimensions");
+        }
+        this.viewRows = Math.min(rows, Battleship.MAX_DIM);
+        this.viewColumns = Math.min(columns, Battleship.MAX_DIM);
+    }
+
+    /**
+     * @return the most ships that can be put on this board, as many as the
+     *         bits of a square's entry below HIT can number
+     */
+    @Override
+    public int getMaxShips() {
+        return ID;
+    }
+
+    @Override
+    public SparseBoard copy() {
+        SparseBoard copy = new SparseBoard(getWidth(), getHeight());
+        copyFleetTo(copy);
+        copy.squares = squares.copy();
+        copy.shots = shots.clone();
+        copy.shotCount = shotCount;
+        copy.setViewport(viewRow, viewColumn, viewRows, viewColumns);
+        return copy;
+    }
+
+    /**
+     * Sparse boards have no bitmaps to share, so a fork is a copy.
+     */
+    @Override
+    public SparseBoard fork() {
+        return copy();
+    }
+
+    @Override
+    void takeBackShot() {
+        long shot = shots[--shotCount];
+        long square = shot & ~SANK;
+        int entry = squares.get(square);
+        squares.put(square, entry & ~HIT);
+        if ((entry & ID) != 0) {
+            unhitShip(entry & ID, (shot & SANK) != 0);
+        }
+    }
+
+    /**
+     * Take back every shot, leaving the fleet where it is. Squares that were
+     * only shot at stay in the table as unshot water, so playing the board
+     * again stores nothing new for them.
+     */
+    @Override
+    public void reset() {
+        squares.clearHits();
+        shotCount = 0;
+        repairFleet();
+    }
+
+    /**
+     * Take every ship and every shot off the board, dropping every stored
+     * square but keeping the room for them, so that a new fleet can be
+     * placed with placeShip.
+     */
+    @Override
+    public void clearFleet() {
+        squares.clear();
+        shotCount = 0;
+        removeFleet();
+    }
+
+    /**
+     * Choose the part of the board that display draws. The window is moved
+     * and shrunk as needed to fit on the board.
+     * @param row the first row to draw
+     * @param column the first column to draw
+     * @param rows how many rows to draw
+     * @param columns how many columns to draw
+     */
+    public void setViewport(int row, int column, int rows, int columns) {
+        viewRows = Math.max(0, Math.min(rows, getWidth()));
+        viewColumns = Math.max(0, Math.min(columns, getHeight()));
+        viewRow = Math.max(0, Math.min(row, getWidth() - viewRows));
+        viewColumn = Math.max(0, Math.min(column, getHeight() - viewColumns));
+    }
+
+    /**
+     * Move the viewport without changing its size.
+     * @param row the first row to draw
+     * @param column the first column to draw
+     */
+    public void moveViewport(int row, int column) {
+        setViewport(row, column, viewRows, viewColumns);
+    }
+
+    @Override
+    int viewportRow() {
+        return viewRow;
+    }
+
+    @Override
+    int viewportColumn() {
+        return viewColumn;
+    }
+
+    @Override
+    int viewportRows() {
+        return viewRows;
+    }
+
+    @Override
+    int viewportColumns() {
+        return viewColumns;
+    }
+
+    @Override
+    public Cell getCell(int row, int column) throws OutOfBoundsException {
+        square(row, column);
+        return new Cell(this, row, column);
+    }
+
+    @Override
+    ShotResult resolve(int row, int column) {
+        if (row < 0 || row >= getWidth() || column < 0 || column >= getHeight()) {
+            return ShotResult.OUT_OF_BOUNDS;
+        }
+        long square = (long) row * getHeight() + column;
+        int entry = squares.get(square);
+        if ((entry & HIT) != 0) {
+            return ShotResult.ALREADY_PLAYED;
+        }
+        squares.put(square, entry | HIT);
+        if (shotCount == shots.length) {
+            shots = Arrays.copyOf(shots, shotCount * 2);
+        }
+        shots[shotCount++] = square;
+        ShotResult result = ShotResult.MISS;
+        int id = entry & ID;
+        if (id != 0) {
+            if (!hitShip(id)) {
+                result = ShotResult.HIT;
+            } else {
+                shots[shotCount - 1] |= SANK;
+                result = sankLast(id) ? ShotResult.GAME_OVER : ShotResult.SUNK;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int getShotCount() {
+        return shotCount;
+    }
+
+    /**
+     * @throws ArithmeticException if the square's index does not fit in an int; use shotSquare
+     */
+    @Override
+    public int getShot(int n) {
+        return Math.toIntExact(shotSquare(n));
+    }
+
+    @Override
+    long shotSquare(int n) {
+        if (n < 0 || n >= shotCount) {
+            throw new IndexOutOfBoundsException(n);
+        }
+        return shots[n] & ~SANK;
+    }
+
+    @Override
+    public boolean isSinkingShot(int n) {
+        if (n < 0 || n >= shotCount) {
+            throw new IndexOutOfBoundsException(n);
+        }
+        return (shots[n] & SANK) != 0;
+    }
+
+    @Override
+    public boolean isHit(int row, int column) throws OutOfBoundsException {
+        return (squares.get(square(row, column)) & HIT) != 0;
+    }
+
+    @Override
+    public Ship getShip(int row, int column) throws OutOfBoundsException {
+        return shipById(squares.get(square(row, column)) & ID);
+    }
+
+    @Override
+    public void putShip(int row, int column, Ship ship) throws OutOfBoundsException, OverlapException {
+        long square = square(row, column);
+        int entry = squares.get(square);
+        if ((entry & ID) != 0) {
+            throw new OverlapException(row, column);
+        }
+        squares.put(square, entry | (idOf(ship) + 1));
+    }
+
+    @Override
+    char displayHitStatusAt(int row, int column) {
+        int entry = squares.get((long) row * getHeight() + column);
+        if ((entry & HIT) == 0) {
+            return Cell.PRISTINE_WATER;
+        }
+        Ship ship = shipById(entry & ID);
+        if (ship == null) {
+            return Cell.HIT_WATER;
+        }
+        return ship.isSunk() ? Cell.SUNK_SHIP_SECTION : Cell.HIT_SHIP_SECTION;
+    }
+
+    @Override
+    char displayCharAt(int row, int column) {
+        int entry = squares.get((long) row * getHeight() + column);
+        if ((entry & HIT) == 0) {
+            return (entry & ID) != 0 ? Cell.HIDDEN_SHIP_SECTION : Cell.PRISTINE_WATER;
+        }
+        return displayHitStatusAt(row, column);
+    }
+
+    @Override
+    char displayHitStatus(int index) {
+        return displayHitStatusAt(index / getHeight(), index % getHeight());
+    }
+
+    @Override
+    char displayChar(int index) {
+        return displayCharAt(index / getHeight(), index % getHeight());
+    }
+
+    @Override
+    Ship shipAt(int index) {
+        return shipAt(index / getHeight(), index % getHeight());
+    }
+
+    @Override
+    Ship shipAt(int row, int column) {
+        return shipById(squares.get((long) row * getHeight() + column) & ID);
+    }
+
+    /**
+     * Sparse boards have no bitmaps.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    long[] occupancyWords() {
+        throw new UnsupportedOperationException("sparse boards have no bitmaps");
+    }
+
+    /**
+     * Sparse boards have no bitmaps.
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    long[] hitWords() {
+        throw new UnsupportedOperationException("sparse boards have no bitmaps");
+    }
+
+    /**
+     * @return the number of squares stored, which is what the board's memory follows
+     */
+    public int getStoredSquares() {
+        return squares.size;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + Arrays.hashCode(Arrays.copyOf(shots, shotCount));
+    }
+
+    @Override
+    public String toString() {
+        return "SparseBoard{" +
+                "rows=" + getWidth() +
+                ", columns=" + getHeight() +
+                ", ships=" + getShips().size() +
+                ", stored squares=" + squares.size +
+                '}';
+    }
+
+    private long square(int row, int column) throws OutOfBoundsException {
+        if (row < 0 || row >= getWidth() || column < 0 || column >= getHeight()) {
+            throw new OutOfBoundsException(row, column);
+        }
+        return (long) row * getHeight() + column;
+    }
+
+    /**
+     * Open-addressing hash table from square index to entry, with linear probing.
+     * An absent square reads as 0, water that has not been shot.
+     */
+    private static final class SquareMap {
+
+        private static final long EMPTY = -1;
+
+        private long[] keys = newKeys(16);
+
+        private int[] values = new int[16];
+
+        private int size;
+
+        SquareMap copy() {
+            SquareMap copy = new SquareMap();
+            copy.keys = keys.clone();
+            copy.values = values.clone();
+            copy.size = size;
+            return copy;
+        }
+
+        /**
+         * Mark every stored square as not shot.
+         */
+        void clearHits() {
+            for (int i = 0; i < values.length; i++) {
+                values[i] &= ~HIT;
+            }
+        }
+
+        void clear() {
+            Arrays.fill(keys, EMPTY);
+            Arrays.fill(values, 0);
+            size = 0;
+        }
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                long k = keys[i];
+                if (k == key) {
+                    return values[i];
+                }
+                if (k == EMPTY) {
+                    return 0;
+                }
+            }
+        }
+
+        void put(long key, int value) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != EMPTY && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            keys[i] = key;
+            values[i] = value;
+            if (++size * 4 > keys.length * 3) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != EMPTY) {
+                    int i = slot(oldKeys[j], mask);
+                    while (keys[i] != EMPTY) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Ranks shooting strategies by playing every one of them on exactly the
+ * same boards, spread over every core with a fork-join pool.
+ *
+ * The boards come from a list of board factories, each dealt a number of
+ * rounds: a FleetGenerator deals a new random fleet every round, while a
+ * layout loaded from a setup file deals the same fleet every round. A game
+ * is one strategy on one round of one factory. The board and the
+ * strategy's random number generator are seeded from the tournament seed,
+ * the factory and the round only, so every strategy meets the same board
+ * with the same randomness, and a run gives the same results however the
+ * work is scheduled. Each worker deals its boards onto the ones it used
+ * before, and takes back the shots between strategies, so no board is
+ * made per game.
+ *
+ * Each game's result is written to a CSV file as soon as the batch of
+ * games it belongs to is finished, rather than being kept until the end:
+ * board,round,strategy,shots,best. Rows come out in the order batches
+ * finish, which varies from run to run. Apart from the batch being
+ * written, a tournament only keeps the standings, so memory stays the same
+ * however many games are played.
+ */
+public class Tournament {
+
+    public static final String CSV_HEADER = "board,round,strategy,shots,best\n";
+
+    /**
+     * The most rounds one task plays before its results are written out.
+     */
+    public static final int MAX_BATCH = 256;
+
+    private final List<Simulation.BoardFactory> boards;
+
+    /**
+     * One pool per board factory, so each worker keeps a board of every size it deals.
+     */
+    private final List<BoardPool> pools = new ArrayList<>();
+
+    private final List<Supplier<? extends ShootingStrategy>> strategies;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param boards where the boards come from
+     * @param strategies makes instances of each strategy
+     */
+    public Tournament(List<Simulation.BoardFactory> boards, List<Supplier<? extends ShootingStrategy>> strategies) {
+        this(boards, strategies, ForkJoinPool.commonPool());
+    }
+
+    public Tournament(List<Simulation.BoardFactory> boards, List<Supplier<? extends ShootingStrategy>> strategies,
+                      ForkJoinPool pool) {
+        if (boards.isEmpty() || strategies.isEmpty()) {
+            throw new IllegalArgumentException("a tournament needs boards and strategies");
+        }
+        this.boards = new ArrayList<>(boards);
+        for (Simulation.BoardFactory factory : boards) {
+            pools.add(new BoardPool(factory));
+        }
+        this.strategies = new ArrayList<>(strategies);
+        this.pool = pool;
+    }
+
+    /**
+     * Play every strategy on every round of every board.
+     * @param rounds how many boards each factory deals
+     * @param seed seed for the boards and the strategies' choices
+     * @param csv where the result of every game is written, or null for none
+     * @return how each strategy did
+     * @throws IOException if the results cannot be written
+     */
+    public Standings run(long rounds, long seed, WritableByteChannel csv) throws IOException {
+        long start = System.nanoTime();
+        if (csv != null) {
+            write(csv, ByteBuffer.wrap(CSV_HEADER.getBytes(StandardCharsets.US_ASCII)));
+        }
+        long games = rounds * boards.size();
+        long threshold = Math.max(1, Math.min(MAX_BATCH, games / (pool.getParallelism() * 8L)));
+        Standings standings;
+        try {
+            standings = pool.invoke(new Rounds(seed, csv, 0, games, threshold));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (SimulationReport report : standings.reports) {
+            report.setElapsedNanos(System.nanoTime() - start);
+        }
+        return standings;
+    }
+
+    private static void write(WritableByteChannel csv, ByteBuffer bytes) throws IOException {
+        synchronized (csv) {
+            while (bytes.hasRemaining()) {
+                csv.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * How each strategy did, in the order the strategies were given.
+     */
+    public static class Standings {
+
+        private final SimulationReport[] reports;
+
+        /**
+         * best[k] is the number of boards strategy k cleared in no more shots than any other strategy.
+         */
+        private final long[] best;
+
+        Standings(SimulationReport[] reports) {
+            this.reports = reports;
+            this.best = new long[reports.length];
+        }
+
+        /**
+         * @param k the strategy
+         * @return its shots-to-win statistics
+         */
+        public SimulationReport getReport(int k) {
+            return reports[k];
+        }
+
+        /**
+         * @param k the strategy
+         * @return the number of boards it cleared in the fewest shots, ties included
+         */
+        public long getBest(int k) {
+            return best[k];
+        }
+
+        public int size() {
+            return reports.length;
+        }
+
+        Standings merge(Standings other) {
+            for (int k = 0; k < reports.length; k++) {
+                reports[k].merge(other.reports[k]);
+                best[k] += other.best[k];
+            }
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder();
+            for (int k = 0; k < reports.length; k++) {
+                s.append(reports[k]).append(String.format("  best=%d", best[k])).append(System.lineSeparator());
+            }
+            return s.toString();
+        }
+    }
+
+    /**
+     * Plays the games numbered [from, to), splitting the range until it is
+     * small. Game g is round g / boards of board g % boards, so a batch
+     * takes turns between the factories.
+     */
+    private class Rounds extends RecursiveTask<Standings> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long seed;
+        private final WritableByteChannel csv;
+        private final long from;
+        private final long to;
+        private final long threshold;
+
+        Rounds(long seed, WritableByteChannel csv, long from, long to, long threshold) {
+            this.seed = seed;
+            this.csv = csv;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected Standings compute() {
+            if (to - from > threshold) {
+                long middle = (from + to) >>> 1;
+                Rounds left = new Rounds(seed, csv, from, middle, threshold);
+                left.fork();
+                Standings right = new Rounds(seed, csv, middle, to, threshold).compute();
+                return left.join().merge(right);
+            }
+            ShootingStrategy[] players = new ShootingStrategy[strategies.size()];
+            SimulationReport[] reports = new SimulationReport[players.length];
+            for (int k = 0; k < players.length; k++) {
+                players[k] = strategies.get(k).get();
+                reports[k] = new SimulationReport(players[k].getName(), 0);
+            }
+            Standings standings = new Standings(reports);
+            int[] shots = new int[players.length];
+            StringBuilder rows = csv == null ? null : new StringBuilder();
+            for (long game = from; game < to; game++) {
+                int board = (int) (game % boards.size());
+                long round = game / boards.size();
+                long gameSeed = seed + board * 0xBF58476D1CE4E5B9L + round * 0x9E3779B97F4A7C15L;
+                Board played = newBoard(board, round, new SplittableRandom(gameSeed));
+                int fewest = Integer.MAX_VALUE;
+                for (int k = 0; k < players.length; k++) {
+                    if (k > 0) {
+                        played.reset();
+                    }
+                    // a stream apart from the one the board was drawn from
+                    SplittableRandom random = new SplittableRandom(gameSeed).split();
+                    shots[k] = Simulation.playGame(played, players[k], random);
+                    reports[k].record(shots[k]);
+                    fewest = Math.min(fewest, shots[k]);
+                }
+                for (int k = 0; k < players.length; k++) {
+                    if (shots[k] == fewest) {
+                        standings.best[k]++;
+                    }
+                    if (rows != null) {
+                        rows.append(board).append(',').append(round).append(',');
+                        appendField(rows, players[k].getName());
+                        rows.append(',').append(shots[k]).append(',').append(shots[k] == fewest ? 1 : 0).append('\n');
+                    }
+                }
+            }
+            if (rows != null) {
+                try {
+                    write(csv, ByteBuffer.wrap(rows.toString().getBytes(StandardCharsets.UTF_8)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return standings;
+        }
+
+        private Board newBoard(int board, long round, SplittableRandom random) {
+            try {
+                return pools.get(board).next(random);
+            } catch (BattleshipException e) {
+                throw new IllegalStateException("Could not set up round " + round + " of board " + board, e);
+            }
+        }
+    }
+
+    /**
+     * Quote a CSV field if it needs it.
+     */
+    private static void appendField(StringBuilder rows, String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) {
+            rows.append(field);
+            return;
+        }
+        rows.append('"').append(field.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Play every built-in strategy on the same boards and print the standings.
+     * Usage: java Tournament results.csv rounds seed (setup.txt | ROWSxCOLUMNS)...
+     * Each setup file is one fixed layout; each ROWSxCOLUMNS deals random standard fleets.
+     * Use - as the file name to skip the CSV.
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.out.println("Usage: java Tournament results.csv rounds seed (setup.txt | ROWSxCOLUMNS)...");
+            return;
+        }
+        try {
+            List<Simulation.BoardFactory> boards = new ArrayList<>();
+            for (int i = 3; i < args.length; i++) {
+                if (args[i].endsWith(".txt")) {
+                    Battleship battleship = Battleship.readFromTxtFile(args[i]);
+                    if (battleship == null) {
+                        return;
+                    }
+                    boards.add(Simulation.fromTemplate(battleship.getBoard()));
+                } else {
+                    String[] dimensions = args[i].split("x");
+                    boards.add(Simulation.randomFleet(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]),
+                            Simulation.STANDARD_FLEET));
+                }
+            }
+            long rounds = Long.parseLong(args[1]);
+            long seed = Long.parseLong(args[2]);
+            Tournament tournament = new Tournament(boards,
+                    List.of(RandomStrategy::new, HuntTargetStrategy::new, DensityStrategy::new));
+            Standings standings;
+            if (args[0].equals("-")) {
+                standings = tournament.run(rounds, seed, null);
+            } else {
+                try (FileChannel csv = FileChannel.open(Paths.get(args[0]), StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    standings = tournament.run(rounds, seed, csv);
+                }
+            }
+            System.out.print(standings);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        } catch (BattleshipException e) {
+            System.out.println(e.getMessage());
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println(Battleship.BAD_CONFIG_FILE);
+        }
+    }
+}
@@ -0,0 +1,513 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * A game between two sides, each with its own board and fleet, taking turns
+ * to shoot at each other's board until one fleet is sunk.
+ *
+ * A side is played by a person at the console or by a ComputerPlayer. A
+ * computer player works out its next shot on a thread of its own as soon as
+ * it has heard how its last one went, so the thinking happens while the
+ * other side takes its turn, and when its own turn comes the shot is
+ * usually ready. The guess is never wasted: nothing the other side does can
+ * change what a player knows about the board it is shooting at, so the shot
+ * worked out early is the shot it would have chosen anyway. In a match
+ * between two computer players that think ahead, both think at once.
+ *
+ * In the salvo variant, a turn is a salvo of one shot for every ship the
+ * side has afloat, chosen before any of them lands and fired together with
+ * Board#fireAll.
+ */
+public class TwoPlayerGame {
+
+    /**
+     * Chooses one side's shots.
+     */
+    public interface Player {
+
+        /**
+         * @return a short name used in messages
+         */
+        String getName();
+
+        /**
+         * Start a new game.
+         * @param target the board this player shoots at
+         * @param random source of randomness for this game
+         */
+        void newGame(Board target, SplittableRandom random);
+
+        /**
+         * Choose the next square to shoot.
+         * @return the row-major index of the square, or -1 to give up the game
+         */
+        int nextShot();
+
+        /**
+         * Learn the outcome of a shot returned by nextShot. A shot that was
+         * not fired, because it was off the board, already played or given
+         * twice in one salvo, does not end the turn: nextShot is asked again.
+         * @param row row number of the shot
+         * @param column column number of the shot
+         * @param result what the shot did
+         */
+        void shotResult(int row, int column, ShotResult result);
+
+        /**
+         * Learn that every shot of this player's turn has been reported, so
+         * the next call to nextShot starts a new turn.
+         */
+        default void turnOver() {
+        }
+
+        /**
+         * Learn where the other side fired at this player's board.
+         * @param row row number of the shot
+         * @param column column number of the shot
+         * @param result what the shot did
+         */
+        default void opponentFired(int row, int column, ShotResult result) {
+        }
+    }
+
+    /**
+     * A player that chooses its shots with a ShootingStrategy, working out
+     * each shot ahead of time on its own thread. Close it to stop the thread.
+     */
+    public static class ComputerPlayer implements Player, AutoCloseable {
+
+        private final ShootingStrategy strategy;
+
+        /**
+         * Where shots are worked out ahead of time, or null to work them out when asked.
+         */
+        private final ExecutorService thinker;
+
+        private Future<Integer> next;
+
+        private boolean won;
+
+        /**
+         * @param strategy chooses the shots
+         * @param ahead true to work out each shot on a background thread while the other side plays
+         */
+        public ComputerPlayer(ShootingStrategy strategy, boolean ahead) {
+            this.strategy = strategy;
+            this.thinker = ahead ? Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "battleship-" + strategy.getName());
+                thread.setDaemon(true);
+                return thread;
+            }) : null;
+        }
+
+        @Override
+        public String getName() {
+            return strategy.getName();
+        }
+
+        @Override
+        public void newGame(Board target, SplittableRandom random) {
+            if (next != null) {
+                // the last game ended on the other side's turn; let that shot finish before starting over
+                nextShot();
+            }
+            strategy.newGame(target, random);
+            won = false;
+            thinkAhead();
+        }
+
+        @Override
+        public int nextShot() {
+            if (next == null) {
+                return strategy.nextShot();
+            }
+            try {
+                return next.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(strategy.getName() + " failed to choose a shot", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            } finally {
+                next = null;
+            }
+        }
+
+        /**
+         * @throws IllegalStateException if the shot was not fired, which a strategy never allows
+         */
+        @Override
+        public void shotResult(int row, int column, ShotResult result) {
+            if (!result.isFired()) {
+                throw new IllegalStateException(strategy.getName() + " made an illegal shot at "
+                        + row + ", " + column + ": " + result);
+            }
+            strategy.shotResult(row, column, result.isHit(), result.isSunk());
+            won |= result == ShotResult.GAME_OVER;
+        }
+
+        /**
+         * Start working out the first shot of the next turn.
+         */
+        @Override
+        public void turnOver() {
+            if (!won) {
+                thinkAhead();
+            }
+        }
+
+        private void thinkAhead() {
+            if (thinker != null) {
+                next = thinker.submit(strategy::nextShot);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (thinker != null) {
+                thinker.shutdownNow();
+            }
+        }
+    }
+
+    private final Board[] boards;
+
+    private final Player[] players;
+
+    private int turns;
+
+    private boolean salvo;
+
+    private int[] salvoRows = new int[0];
+
+    private int[] salvoColumns = new int[0];
+
+    private final SalvoResult salvoResult = new SalvoResult();
+
+    /**
+     * @param firstBoard the first side's fleet, which the second side shoots at
+     * @param first the first side, who shoots first
+     * @param secondBoard the second side's fleet
+     * @param second the second side
+     */
+    public TwoPlayerGame(Board firstBoard, Player first, Board secondBoard, Player second) {
+        this.boards = new Board[]{firstBoard, secondBoard};
+        this.players = new Player[]{first, second};
+    }
+
+    public boolean isSalvo() {
+        return salvo;
+    }
+
+    /**
+     * Choose between one shot a turn and a salvo of one shot for every ship afloat.
+     * @param salvo true for salvos
+     */
+    public void setSalvo(boolean salvo) {
+        this.salvo = salvo;
+    }
+
+    /**
+     * Play the game to the end.
+     * @param random randomness for both players
+     * @return 0 if the first side won, 1 if the second side won
+     */
+    public int play(SplittableRandom random) {
+        for (int side = 0; side < 2; side++) {
+            boards[side].setHeadless(true);
+            players[side].newGame(boards[1 - side], random.split());
+        }
+        turns = 0;
+        int side = 0;
+        while (true) {
+            Board target = boards[1 - side];
+            int columns = target.getHeight();
+            if (salvo) {
+                if (!fireSalvo(side)) {
+                    return 1 - side;
+                }
+                if (salvoResult.isGameOver()) {
+                    return side;
+                }
+                side = 1 - side;
+                continue;
+            }
+            int shot = players[side].nextShot();
+            if (shot < 0) {
+                return 1 - side;
+            }
+            int row = shot / columns;
+            int column = shot % columns;
+            ShotResult result = target.fire(row, column);
+            players[side].shotResult(row, column, result);
+            if (!result.isFired()) {
+                continue;
+            }
+            turns++;
+            players[side].turnOver();
+            players[1 - side].opponentFired(row, column, result);
+            if (result == ShotResult.GAME_OVER) {
+                return side;
+            }
+            side = 1 - side;
+        }
+    }
+
+    /**
+     * Let one side choose a salvo and fire it.
+     * @return false if the side gave up
+     */
+    private boolean fireSalvo(int side) {
+        Board target = boards[1 - side];
+        int columns = target.getHeight();
+        long unplayed = (long) target.getWidth() * columns - target.getShotCount();
+        int count = (int) Math.min(boards[side].getShipsRemaining(), unplayed);
+        if (salvoRows.length < count) {
+            salvoRows = new int[count];
+            salvoColumns = new int[count];
+        }
+        for (int i = 0; i < count; i++) {
+            int shot = players[side].nextShot();
+            if (shot < 0) {
+                return false;
+            }
+            salvoRows[i] = shot / columns;
+            salvoColumns[i] = shot % columns;
+        }
+        target.fireAll(salvoRows, salvoColumns, count, salvoResult);
+        for (int i = 0; i < count; i++) {
+            players[side].shotResult(salvoRows[i], salvoColumns[i], salvoResult.get(i));
+        }
+        players[side].turnOver();
+        for (int i = 0; i < count; i++) {
+            if (salvoResult.get(i).isFired()) {
+                players[1 - side].opponentFired(salvoRows[i], salvoColumns[i], salvoResult.get(i));
+            }
+        }
+        turns += salvoResult.getFired();
+        return true;
+    }
+
+    /**
+     * @return how many shots were fired in the last game, by both sides
+     */
+    public int getTurns() {
+        return turns;
+    }
+
+    /**
+     * A person at the console: h row column to shoot, ! to show the other
+     * side's ships, q to give up.
+     */
+    private static class ConsolePlayer implements Player {
+
+        private final BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+
+        private final PrintStream out = System.out;
+
+        private final BoardRenderer renderer = new BoardRenderer(System.out);
+
+        private final Board own;
+
+        private Board target;
+
+        /**
+         * Ships sunk this turn, announced when the turn is over.
+         */
+        private int sunk;
+
+        private boolean won;
+
+        /**
+         * Set when the other side has fired since the player last saw their own fleet.
+         */
+        private boolean fleetChanged;
+
+        ConsolePlayer(Board own) {
+            this.own = own;
+        }
+
+        @Override
+        public String getName() {
+            return "you";
+        }
+
+        @Override
+        public void newGame(Board target, SplittableRandom random) {
+            this.target = target;
+            out.println("Your fleet:");
+            renderer.fullDisplay(own);
+            out.println("Their board:");
+            renderer.display(target);
+        }
+
+        @Override
+        public int nextShot() {
+            if (fleetChanged) {
+                renderer.fullDisplay(own);
+                fleetChanged = false;
+            }
+            while (true) {
+                out.print(Battleship.PROMPT);
+                out.flush();
+                String input;
+                try {
+                    input = in.readLine();
+                } catch (IOException e) {
+                    input = null;
+                }
+                if (input == null) {
+                    return -1;
+                }
+                String[] commands = input.trim().split(Battleship.WHITESPACE);
+                if (commands[0].equalsIgnoreCase("q")) {
+                    return -1;
+                } else if (commands[0].equalsIgnoreCase("!")) {
+                    renderer.fullDisplay(target);
+                } else if (commands[0].equalsIgnoreCase("h") && commands.length == 3) {
+                    try {
+                        int row = Integer.parseInt(commands[1]);
+                        int column = Integer.parseInt(commands[2]);
+                        if (row >= 0 && row < target.getWidth() && column >= 0 && column < target.getHeight()) {
+                            return row * target.getHeight() + column;
+                        }
+                        out.println(new OutOfBoundsException(row, column).getMessage());
+                    } catch (NumberFormatException e) {
+                        out.println(Battleship.BAD_COMMAND);
+                    }
+                } else if (commands[0].equalsIgnoreCase("h")) {
+                    out.println(Battleship.BAD_ARG_COUNT + " h");
+                } else {
+                    out.println(" Enter a valid command ");
+                }
+            }
+        }
+
+        @Override
+        public void shotResult(int row, int column, ShotResult result) {
+            if (result == ShotResult.ALREADY_PLAYED || result == ShotResult.REPEATED) {
+                out.println(new CellPlayedException(row, column).getMessage());
+            }
+            if (result.isSunk()) {
+                sunk++;
+            }
+            won |= result == ShotResult.GAME_OVER;
+        }
+
+        @Override
+        public void turnOver() {
+            renderer.display(target);
+            for (; sunk > 0; sunk--) {
+                out.println(Ship.SUNK_MESSAGE);
+            }
+            if (won) {
+                out.println(Battleship.ALL_SHIPS_SUNK + " You win.");
+            }
+        }
+
+        @Override
+        public void opponentFired(int row, int column, ShotResult result) {
+            out.println("They fire at " + row + " " + column + ": " + result.name().toLowerCase(Locale.ROOT).replace('_', ' '));
+            fleetChanged = true;
+            if (result == ShotResult.GAME_OVER) {
+                renderer.fullDisplay(own);
+                out.println(Battleship.ALL_SHIPS_SUNK + " You lose.");
+            }
+        }
+    }
+
+    private static Supplier<ShootingStrategy> strategy(String name) {
+        switch (name) {
+            case "random":
+                return RandomStrategy::new;
+            case "hunt-target":
+                return HuntTargetStrategy::new;
+            default:
+                return DensityStrategy::new;
+        }
+    }
+
+    /**
+     * Play against the computer, or have the computer play itself.
+     * Usage: java TwoPlayerGame (setup.txt | ROWSxCOLUMNS) [matches] [seed]
+     * Without matches, you play the computer: your fleet comes from the setup
+     * file, or is placed at random, and the computer's is placed at random.
+     * With matches, two computer players play that many matches and the
+     * results are printed. -Dbattleship.salvo=true plays the salvo variant.
+     * -Dbattleship.strategy=random|hunt-target|density
+     * chooses how the computer plays. -Dbattleship.ahead chooses whether it
+     * works out its shots ahead of time, which it does against a person; in
+     * matches it does not by default, as handing a shot between threads
+     * costs more than any of the built-in strategies take to choose one.
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println(Battleship.MISSING_SETUP_FILE);
+            return;
+        }
+        Supplier<ShootingStrategy> strategies = strategy(System.getProperty("battleship.strategy", "density"));
+        boolean salvo = Boolean.getBoolean("battleship.salvo");
+        boolean ahead = Boolean.parseBoolean(System.getProperty("battleship.ahead", String.valueOf(args.length < 2)));
+        try {
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+            SplittableRandom random = new SplittableRandom(seed);
+            Board own;
+            if (args[0].endsWith(".txt")) {
+                Battleship battleship = Battleship.readFromTxtFile(args[0]);
+                if (battleship == null) {
+                    return;
+                }
+                own = battleship.getBoard();
+            } else {
+                String[] dimensions = args[0].split("x");
+                own = new FleetGenerator(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]),
+                        Simulation.STANDARD_FLEET).newBoard(random);
+            }
+            Simulation.BoardFactory fleets = new FleetGenerator(own.getWidth(), own.getHeight(), Simulation.STANDARD_FLEET);
+            if (args.length < 2) {
+                try (ComputerPlayer computer = new ComputerPlayer(strategies.get(), ahead)) {
+                    TwoPlayerGame game = new TwoPlayerGame(own, new ConsolePlayer(own), fleets.newBoard(random), computer);
+                    game.setSalvo(salvo);
+                    game.play(random);
+                }
+                return;
+            }
+            int matches = Integer.parseInt(args[1]);
+            BoardPool first = new BoardPool(fleets);
+            BoardPool second = new BoardPool(fleets);
+            int[] wins = new int[2];
+            long turns = 0;
+            long start = System.nanoTime();
+            try (ComputerPlayer a = new ComputerPlayer(strategies.get(), ahead);
+                 ComputerPlayer b = new ComputerPlayer(strategies.get(), ahead)) {
+                for (int match = 0; match < matches; match++) {
+                    TwoPlayerGame game = new TwoPlayerGame(first.next(random), a, second.next(random), b);
+                    game.setSalvo(salvo);
+                    wins[game.play(random)]++;
+                    turns += game.getTurns();
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.println(String.format("%d matches of %s against itself%s: first side won %d, second side won %d,"
+                            + " %.1f shots per match, %.0f matches/sec", matches, strategies.get().getName(),
+                    (salvo ? " in salvos" : "") + (ahead ? ", thinking ahead" : ""), wins[0], wins[1], (double) turns / Math.max(matches, 1),
+                    matches * 1e9 / nanos));
+        } catch (IOException e) {
+            System.out.println(Battleship.MISSING_SETUP_FILE + " " + args[0]);
+        } catch (BattleshipException e) {
+            System.out.println(e.getMessage());
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println(Battleship.BAD_CONFIG_FILE);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Micro-benchmarks for the core game paths, run over a grid of board sizes
+ * and fleet densities (the fraction of squares covered by ships).
+ *
+ * Each benchmark prepares its inputs outside the timed region, runs a batch of
+ * operations, and reports nanoseconds per operation over several measured
+ * rounds after a warm-up. Results print as CSV so runs before and after a
+ * change can be compared line by line.
+ *
+ * Compile and run from the repository root:
+ *   javac -encoding UTF-8 -d out *.java benchmark/*.java
+ *   java -cp out BattleshipBenchmark [filter]
+ * where the optional filter runs only the benchmarks whose name contains it.
+ */
+public class BattleshipBenchmark {
+
+    private static final int[] SIZES = {5, 10, 20};
+
+    private static final double[] DENSITIES = {0.1, 0.3};
+
+    private static final int WARMUP_ROUNDS = 10;
+
+    private static final int MEASURED_ROUNDS = 10;
+
+    /**
+     * Boards prepared per round for the benchmarks that use boards up.
+     */
+    private static final int BATCH = 2000;
+
+    /**
+     * Results are added here so the JIT cannot drop the measured work.
+     */
+    static volatile long sink;
+
+    /**
+     * One benchmark at one parameter setting.
+     */
+    interface Benchmark {
+
+        /**
+         * Prepare the inputs for one round. Not timed.
+         */
+        default void setUp() throws Exception {
+        }
+
+        /**
+         * Do the timed work.
+         * @return the number of operations performed
+         */
+        int run() throws Exception;
+    }
+
+    /**
+     * The parameters of one run: board size and the ship layout that gives the requested density.
+     */
+    static class Params {
+        final int size;
+        final double density;
+        final List<String> setupLines = new ArrayList<>();
+
+        Params(int size, double density) {
+            this.size = size;
+            this.density = density;
+            SplittableRandom random = new SplittableRandom(size * 31L + (long) (density * 100));
+            boolean[] taken = new boolean[size * size];
+            int target = (int) Math.round(size * size * density);
+            int covered = 0;
+            int[] lengths = {5, 4, 3, 3, 2};
+            for (int attempt = 0; covered < target && attempt < 100000; attempt++) {
+                int length = Math.min(size, lengths[setupLines.size() % lengths.length]);
+                boolean horizontal = random.nextBoolean();
+                int row = random.nextInt(horizontal ? size : size - length + 1);
+                int column = random.nextInt(horizontal ? size - length + 1 : size);
+                boolean free = true;
+                for (int i = 0; i < length && free; i++) {
+                    free = !taken[(row + (horizontal ? 0 : i)) * size + column + (horizontal ? i : 0)];
+                }
+                if (free) {
+                    for (int i = 0; i < length; i++) {
+                        taken[(row + (horizontal ? 0 : i)) * size + column + (horizontal ? i : 0)] = true;
+                    }
+                    setupLines.add(row + " " + column + " " + (horizontal ? "HORIZONTAL" : "VERTICAL") + " " + length);
+                    covered += length;
+                }
+            }
+        }
+
+        Board newBoard() throws Exception {
+            Battleship battleship = new Battleship(size, size);
+            if (!battleship.setup(setupLines)) {
+                throw new IllegalStateException("bad generated setup");
+            }
+            return battleship.getBoard();
+        }
+
+        Board[] newBoards(int count) throws Exception {
+            Board[] boards = new Board[count];
+            for (int i = 0; i < count; i++) {
+                boards[i] = newBoard();
+                boards[i].setHeadless(true);
+            }
+            return boards;
+        }
+
+        @Override
+        public String toString() {
+            return size + "x" + size + "," + density;
+        }
+    }
+
+    interface Factory {
+        Benchmark create(Params params) throws Exception;
+    }
+
+    private final List<String> names = new ArrayList<>();
+
+    private final List<Factory> factories = new ArrayList<>();
+
+    private void add(String name, Factory factory) {
+        names.add(name);
+        factories.add(factory);
+    }
+
+    private BattleshipBenchmark() {
+        PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+
+        add("boardConstruction", p -> () -> {
+            for (int i = 0; i < BATCH; i++) {
+                sink += new Board(p.size, p.size).hashCode();
+            }
+            return BATCH;
+        });
+
+        add("shipPlacement", p -> new Benchmark() {
+            final List<Ship> template = p.newBoard().getShips();
+            Board[] boards;
+
+            public void setUp() {
+                boards = new Board[BATCH];
+                for (int i = 0; i < BATCH; i++) {
+                    boards[i] = new Board(p.size, p.size);
+                }
+            }
+
+            public int run() throws Exception {
+                for (Board board : boards) {
+                    for (Ship ship : template) {
+                        new Ship(board, ship.getRow(), ship.getColumn(), ship.getOrientation(), ship.getLength());
+                    }
+                }
+                return BATCH * template.size();
+            }
+        });
+
+        add("cellHit", p -> new Benchmark() {
+            Board[] boards;
+
+            public void setUp() throws Exception {
+                boards = p.newBoards(BATCH / 10);
+            }
+
+            public int run() throws Exception {
+                for (Board board : boards) {
+                    for (int row = 0; row < p.size; row++) {
+                        for (int column = 0; column < p.size; column++) {
+                            board.getCell(row, column).hit();
+                        }
+                    }
+                }
+                return boards.length * p.size * p.size;
+            }
+        });
+
+        add("shipHit", p -> new Benchmark() {
+            Board[] boards;
+
+            public void setUp() throws Exception {
+                boards = p.newBoards(BATCH);
+            }
+
+            public int run() {
+                int hits = 0;
+                for (Board board : boards) {
+                    for (Ship ship : board.getShips()) {
+                        for (int i = 0; i < ship.getLength(); i++) {
+                            ship.hit();
+                        }
+                        hits += ship.getLength();
+                    }
+                }
+                return hits;
+            }
+        });
+
+        add("allSunk", p -> new Benchmark() {
+            final Board board = halfPlayed(p);
+
+            public int run() {
+                for (int i = 0; i < BATCH * 10; i++) {
+                    sink += board.allSunk() ? 1 : 0;
+                }
+                return BATCH * 10;
+            }
+        });
+
+        add("display", p -> new Benchmark() {
+            final Board board = halfPlayed(p);
+
+            public int run() {
+                for (int i = 0; i < BATCH / 10; i++) {
+                    board.display(nowhere);
+                }
+                return BATCH / 10;
+            }
+        });
+
+        add("fullDisplay", p -> new Benchmark() {
+            final Board board = halfPlayed(p);
+
+            public int run() {
+                for (int i = 0; i < BATCH / 10; i++) {
+                    board.fullDisplay(nowhere);
+                }
+                return BATCH / 10;
+            }
+        });
+
+        add("setupParsing", p -> () -> {
+            for (int i = 0; i < BATCH / 10; i++) {
+                Battleship battleship = new Battleship(p.size, p.size);
+                sink += battleship.setup(p.setupLines) ? 1 : 0;
+            }
+            return BATCH / 10;
+        });
+
+        add("saveLoadRoundTrip", p -> new Benchmark() {
+            final Board board = halfPlayed(p);
+            final File file = File.createTempFile("battleship-bench", ".bin");
+
+            {
+                file.deleteOnExit();
+            }
+
+            public int run() {
+                Battleship saver = new Battleship(p.size, p.size);
+                Battleship loader = new Battleship();
+                int rounds = 20;
+                for (int i = 0; i < rounds; i++) {
+                    saver.setBoard(board);
+                    saver.save(file.getPath());
+                    loader.readFromBinFile(file.getPath());
+                    sink += loader.getBoard().getShips().size();
+                }
+                return rounds;
+            }
+        });
+    }
+
+    /**
+     * A board where every other square has been shot, so displays show every kind of cell.
+     */
+    private static Board halfPlayed(Params params) throws Exception {
+        Board board = params.newBoard();
+        board.setHeadless(true);
+        for (int row = 0; row < params.size; row++) {
+            for (int column = row % 2; column < params.size; column += 2) {
+                board.hit(row, column);
+            }
+        }
+        return board;
+    }
+
+    private void runAll(String filter) throws Exception {
+        System.out.println("benchmark,size,density,ns/op,stddev");
+        for (int b = 0; b < names.size(); b++) {
+            if (filter != null && !names.get(b).contains(filter)) {
+                continue;
+            }
+            for (int size : SIZES) {
+                for (double density : DENSITIES) {
+                    Params params = new Params(size, density);
+                    Benchmark benchmark = factories.get(b).create(params);
+                    double[] nanosPerOp = new double[MEASURED_ROUNDS];
+                    for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+                        benchmark.setUp();
+                        long start = System.nanoTime();
+                        int ops = benchmark.run();
+                        long elapsed = System.nanoTime() - start;
+                        if (round >= WARMUP_ROUNDS) {
+                            nanosPerOp[round - WARMUP_ROUNDS] = (double) elapsed / ops;
+                        }
+                    }
+                    double mean = 0;
+                    for (double value : nanosPerOp) {
+                        mean += value / MEASURED_ROUNDS;
+                    }
+                    double variance = 0;
+                    for (double value : nanosPerOp) {
+                        variance += (value - mean) * (value - mean) / MEASURED_ROUNDS;
+                    }
+                    System.out.println(String.format(Locale.ROOT, "%s,%s,%.1f,%.1f",
+                            names.get(b), params, mean, Math.sqrt(variance)));
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new BattleshipBenchmark().runAll(args.length > 0 ? args[0] : null);
+    }
+}
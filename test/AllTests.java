@@ -0,0 +1,16 @@
+/**
+ * Runs every test in this directory.
+ */
+public class AllTests {
+
+    public static void main(String[] args) {
+        BoardTest.run();
+        BoardFileTest.run();
+        SetupParserTest.run();
+        BatchRunnerTest.run();
+        MoveJournalTest.run();
+        ConcurrentBoardTest.run();
+        GameEventsTest.run();
+        Check.finish();
+    }
+}
@@ -0,0 +1,81 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Runs scripts through BatchRunner and checks the summary it prints,
+ * including scripts that end oddly and commands split across reads.
+ */
+public class BatchRunnerTest {
+
+    /**
+     * A 4x4 board with a ship of 2 across the top left corner and a ship of 1 in the bottom right.
+     */
+    static final List<String> SETUP = List.of("0 0 HORIZONTAL 2", "3 3 VERTICAL 1");
+
+    static void run() {
+        Check.test("a script ending in spaces or tabs without a newline", () -> {
+            for (String tail : new String[] {" ", "\t", "  \t ", "\r"}) {
+                String summary = run("h 1 1\n" + tail);
+                Check.isTrue(summary.contains("commands: 1 "), "commands before \"" + tail + "\": " + summary);
+                Check.isTrue(summary.contains("h: 1 (hits 0, misses 1,"), "shots before \"" + tail + "\": " + summary);
+            }
+            Check.isTrue(run("   ").contains("commands: 0 "), "only spaces");
+            Check.isTrue(run("").contains("commands: 0 "), "empty script");
+        });
+
+        Check.test("the last command needs no newline", () -> {
+            Check.isTrue(run("h 1 1\r\nh 0 0").contains("h: 2 (hits 1, misses 1, sunk 0,"), "shots");
+            Check.isTrue(run("h 0 0\nq").contains("q: 1"), "quit");
+        });
+
+        Check.test("bad commands and bad shots are counted, not fatal", () -> {
+            String summary = run("x\n\nhh 1 1\nh 1\nh 1 1 1\nh a 1\ns\nq now\nh -1 0\nh 99999999999 0\nh 2 2\nh 2 2\n");
+            Check.isTrue(summary.contains("commands: 12 "), summary);
+            Check.isTrue(summary.contains("bad commands: 5"), summary);
+            Check.isTrue(summary.contains("h: 7 (hits 0, misses 1, sunk 0, already played 1, out of bounds 2, malformed 3)"),
+                    summary);
+            Check.isTrue(summary.contains("q: 0"), summary);
+        });
+
+        Check.test("the script stops at q and when every ship is sunk", () -> {
+            Check.isTrue(run("h 1 1\nq\nh 2 2\n").contains("h: 1 "), "after q");
+            String summary = run("h 0 0\nh 0 1\nh 3 3\nh 2 2\n");
+            Check.isTrue(summary.contains("h: 3 (hits 3, misses 0, sunk 2,"), summary);
+            Check.isTrue(summary.contains(Battleship.ALL_SHIPS_SUNK), summary);
+        });
+
+        Check.test("commands split across reads of the buffer", () -> {
+            StringBuilder script = new StringBuilder();
+            int repeats = 30000;
+            for (int i = 0; i < repeats; i++) {
+                script.append("H  1\t2 \r\n");
+            }
+            String summary = run(script.toString());
+            Check.isTrue(summary.contains("commands: " + repeats + " "), summary);
+            Check.isTrue(summary.contains("already played " + (repeats - 1) + ","), summary);
+        });
+    }
+
+    /**
+     * Run a script on a fresh game and return everything printed.
+     */
+    static String run(String script) throws Exception {
+        Battleship game = new Battleship(4, 4);
+        Check.isTrue(game.setup(SETUP), "setup");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BatchRunner runner = new BatchRunner(game, new PrintStream(bytes, true, Charset.defaultCharset()));
+        runner.run(Channels.newChannel(new ByteArrayInputStream(script.getBytes(StandardCharsets.US_ASCII))));
+        runner.printSummary();
+        return bytes.toString(Charset.defaultCharset());
+    }
+
+    public static void main(String[] args) {
+        run();
+        Check.finish();
+    }
+}
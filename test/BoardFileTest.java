@@ -0,0 +1,190 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Checks that boards survive a trip through the save format, that damaged
+ * files are refused, and that a save written by the original serialized
+ * format still loads.
+ *
+ * legacy-6x8.bin was saved by the original game, from this setup file:
+ * <pre>
+ *   6 8
+ *   0 0 HORIZONTAL 3
+ *   1 7 VERTICAL 4
+ *   3 2 VERTICAL 2
+ *   5 4 HORIZONTAL 1
+ *   4 4 HORIZONTAL 2
+ * </pre>
+ * after the shots 0 0, 0 1, 0 2, 2 7, 3 2, 5 5, 0 7, 5 4 and 4 0.
+ */
+public class BoardFileTest {
+
+    static final Path LEGACY = Paths.get("test", "legacy-6x8.bin");
+
+    /**
+     * The original game's fullDisplay of the legacy save.
+     */
+    static final String LEGACY_DISPLAY = "\n"
+            + "  0 1 2 3 4 5 6 7 \n"
+            + "0 * * * _ _ _ _ . \n"
+            + "1 _ _ _ _ _ _ _ S \n"
+            + "2 _ _ _ _ _ _ _ " + Cell.HIT_SHIP_SECTION + " \n"
+            + "3 _ _ " + Cell.HIT_SHIP_SECTION + " _ _ _ _ S \n"
+            + "4 . _ S _ S S _ S \n"
+            + "5 _ _ _ _ * . _ _ \n";
+
+    static void run() {
+        Check.test("boards survive encode and decode", () -> {
+            SplittableRandom random = new SplittableRandom(5);
+            for (int game = 0; game < 200; game++) {
+                Board board = randomGame(random);
+                assertSame(board, BoardFile.decode(BoardFile.encode(board)));
+            }
+        });
+
+        Check.test("boards survive a file and a channel", () -> {
+            Board board = randomGame(new SplittableRandom(6));
+            Path file = Files.createTempFile("board", ".bin");
+            try {
+                BoardFile.write(board, file);
+                assertSame(board, BoardFile.read(file));
+            } finally {
+                Files.delete(file);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            BoardFile.write(board, Channels.newChannel(bytes));
+            Check.equal(BoardFile.encode(board).remaining(), bytes.size(), "bytes written");
+            assertSame(board, BoardFile.read(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray()))));
+        });
+
+        Check.test("sparse boards keep their shots in order", () -> {
+            SparseBoard board = new SparseBoard(100000, 70000);
+            new Ship(board, 99990, 69000, Ship.Orientation.HORIZONTAL, 3);
+            new Ship(board, 5, 5, Ship.Orientation.VERTICAL, 2);
+            board.hit(99990, 69001);
+            board.hit(0, 0);
+            board.hit(6, 5);
+            Board decoded = BoardFile.decode(BoardFile.encode(board));
+            Check.isTrue(decoded instanceof SparseBoard, "decoded a sparse board");
+            Check.equal(3, decoded.getShotCount(), "shots");
+            for (int n = 0; n < 3; n++) {
+                Check.equal(board.shotSquare(n), decoded.shotSquare(n), "shot " + n);
+            }
+            Check.equal(board.getHitShipCells(), decoded.getHitShipCells(), "hit ship squares");
+        });
+
+        Check.test("a damaged byte fails the checksum", () -> {
+            ByteBuffer encoded = BoardFile.encode(randomGame(new SplittableRandom(7)));
+            for (int i = 20; i < encoded.limit(); i += 7) {
+                ByteBuffer damaged = ByteBuffer.allocate(encoded.limit()).put(encoded.duplicate());
+                damaged.put(i, (byte) (damaged.get(i) ^ 0x10)).flip();
+                IOException e = Check.thrown(IOException.class, () -> BoardFile.decode(damaged));
+                Check.isTrue(e.getMessage().startsWith("Corrupt save file"), "message " + e.getMessage());
+            }
+        });
+
+        Check.test("a truncated file and a foreign file are refused", () -> {
+            ByteBuffer encoded = BoardFile.encode(randomGame(new SplittableRandom(8)));
+            for (int length = 0; length < encoded.limit(); length += 5) {
+                ByteBuffer truncated = encoded.duplicate().limit(length);
+                Check.thrown(IOException.class, () -> BoardFile.decode(truncated));
+            }
+            ByteBuffer foreign = ByteBuffer.wrap("not a board at all, just text".getBytes());
+            Check.equal("Not a Battleship save file",
+                    Check.thrown(IOException.class, () -> BoardFile.decode(foreign)).getMessage(), "message");
+        });
+
+        Check.test("a save from the original game loads", () -> {
+            Board board = BoardFile.read(LEGACY);
+            Check.equal(BoardTest.encoded(LEGACY_DISPLAY), BoardTest.display(board, true), "fullDisplay");
+            Check.equal(5, board.getShips().size(), "ships");
+            Check.equal(3, board.getShipsRemaining(), "ships afloat");
+            Check.equal(9, board.getShotCount(), "shots");
+            Check.equal(Ship.Orientation.VERTICAL, board.getShip(2, 7).getOrientation(), "orientation of 1 7");
+            Check.equal(1, board.getShip(2, 7).getRow(), "top of 1 7");
+        });
+
+        Check.test("a save from the original game converts to the new format", () -> {
+            Path converted = Files.createTempFile("converted", ".bin");
+            try {
+                BoardFile.convert(LEGACY, converted);
+                Check.equal(BoardFile.MAGIC, ByteBuffer.wrap(Files.readAllBytes(converted)).getInt(), "magic");
+                assertSame(BoardFile.read(LEGACY), BoardFile.read(converted));
+            } finally {
+                Files.delete(converted);
+            }
+        });
+
+        Check.test("a serialized file that is not an old save is refused", () -> {
+            Path file = Files.createTempFile("foreign", ".bin");
+            try {
+                try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(file))) {
+                    out.writeObject(new HashMap<>(Map.of("rows", 6)));
+                }
+                Check.thrown(IOException.class, () -> BoardFile.read(file));
+            } finally {
+                Files.delete(file);
+            }
+        });
+    }
+
+    /**
+     * A random fleet on a random board, with some shots fired at it.
+     */
+    static Board randomGame(SplittableRandom random) throws BattleshipException {
+        int rows = 1 + random.nextInt(20);
+        int columns = 1 + random.nextInt(20);
+        Board board = new Board(rows, columns);
+        for (int attempt = 0; attempt < 10; attempt++) {
+            try {
+                new Ship(board, random.nextInt(rows), random.nextInt(columns),
+                        random.nextBoolean() ? Ship.Orientation.HORIZONTAL : Ship.Orientation.VERTICAL,
+                        1 + random.nextInt(5));
+            } catch (OverlapException | OutOfBoundsException e) {
+                // try somewhere else
+            }
+        }
+        for (int shot = random.nextInt(rows * columns + 1); shot > 0; shot--) {
+            board.fire(random.nextInt(rows), random.nextInt(columns));
+        }
+        return board;
+    }
+
+    static void assertSame(Board expected, Board actual) throws BattleshipException {
+        Check.equal(expected.getWidth(), actual.getWidth(), "rows");
+        Check.equal(expected.getHeight(), actual.getHeight(), "columns");
+        Check.equal(expected.getShips().size(), actual.getShips().size(), "ships");
+        for (int i = 0; i < expected.getShips().size(); i++) {
+            Ship ship = expected.getShips().get(i);
+            Ship copy = actual.getShips().get(i);
+            Check.equal(ship.getRow() + " " + ship.getColumn() + " " + ship.getOrientation() + " " + ship.getLength()
+                            + " " + ship.getNumOfHits(),
+                    copy.getRow() + " " + copy.getColumn() + " " + copy.getOrientation() + " " + copy.getLength()
+                            + " " + copy.getNumOfHits(), "ship " + i);
+        }
+        for (int row = 0; row < expected.getWidth(); row++) {
+            for (int column = 0; column < expected.getHeight(); column++) {
+                Check.equal(expected.getCell(row, column).displayChar(), actual.getCell(row, column).displayChar(),
+                        "square " + row + " " + column);
+            }
+        }
+        Check.equal(expected.getShotCount(), actual.getShotCount(), "shots");
+        Check.equal(expected.getShipsRemaining(), actual.getShipsRemaining(), "ships afloat");
+        Check.equal(expected.getHitShipCells(), actual.getHitShipCells(), "hit ship squares");
+    }
+
+    public static void main(String[] args) {
+        run();
+        Check.finish();
+    }
+}
@@ -0,0 +1,454 @@
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.SplittableRandom;
+import java.util.function.BiFunction;
+
+/**
+ * Checks Board against a reference model written the way the original
+ * Cell-per-square board worked: random fleets are placed on random boards
+ * and shot at, out of bounds and twice over included, and after every step
+ * each square, the fleet status and the drawn board must match the model.
+ */
+public class BoardTest {
+
+    static void run() {
+        Check.test("board matches the reference model over random games", () -> {
+            SplittableRandom random = new SplittableRandom(1);
+            for (int game = 0; game < 300; game++) {
+                int rows = 1 + random.nextInt(12);
+                int columns = 1 + random.nextInt(12);
+                Board board = new Board(rows, columns);
+                Reference reference = new Reference(rows, columns);
+                placeFleet(board, reference, random);
+                for (int shot = 0; shot < rows * columns * 2; shot++) {
+                    int row = random.nextInt(rows + 2) - 1;
+                    int column = random.nextInt(columns + 2) - 1;
+                    hit(board, reference, row, column);
+                    compare(board, reference);
+                }
+            }
+        });
+
+        Check.test("reset and clearFleet let every kind of board be played again", () -> {
+            SplittableRandom random = new SplittableRandom(3);
+            for (int game = 0; game < 300; game++) {
+                int rows = 1 + random.nextInt(12);
+                int columns = 1 + random.nextInt(12);
+                Board board = game % 3 == 0 ? new Board(rows, columns)
+                        : game % 3 == 1 ? new SparseBoard(rows, columns) : new ConcurrentBoard(rows, columns);
+                Reference reference = new Reference(rows, columns);
+                placeFleet(board, reference, random);
+                play(board, reference, random);
+                board.reset();
+                reference.reset();
+                compare(board, reference);
+                Check.equal(0, board.getShotCount(), "shots after reset");
+                Check.equal(0, board.getHitShipCells(), "hit ship squares after reset");
+                play(board, reference, random);
+                board.clearFleet();
+                reference = new Reference(rows, columns);
+                compare(board, reference);
+                Check.equal(0, board.getShips().size(), "ships after clearFleet");
+                Check.equal(0, board.getShotCount(), "shots after clearFleet");
+                if (board instanceof SparseBoard) {
+                    Check.equal(0, ((SparseBoard) board).getStoredSquares(), "stored squares after clearFleet");
+                }
+                placeFleet(board, reference, random, true);
+                play(board, reference, random);
+            }
+        });
+
+        Check.test("undo takes shots back and forks are independent of their boards", () -> {
+            undoAndFork(Board::new, 4);
+        });
+
+        Check.test("a ship that does not fit leaves the board as it was", () -> {
+            Board board = new Board(4, 4);
+            new Ship(board, 1, 0, Ship.Orientation.HORIZONTAL, 3);
+            Check.thrown(OverlapException.class, () -> new Ship(board, 0, 1, Ship.Orientation.VERTICAL, 3));
+            Check.thrown(OutOfBoundsException.class, () -> new Ship(board, 3, 2, Ship.Orientation.HORIZONTAL, 3));
+            Check.equal(1, board.getShips().size(), "ships");
+            Check.equal(null, board.getShip(0, 1), "ship above the one that fits");
+            Check.equal(null, board.getShip(3, 2), "ship on the bottom row");
+        });
+
+        Check.test("a board refuses more ships than its ids can number", () -> {
+            Board board = new Board(200, 200);
+            Ship last = null;
+            for (int i = 0; i < board.getMaxShips(); i++) {
+                last = new Ship(board, i / 200, i % 200, Ship.Orientation.HORIZONTAL, 1);
+            }
+            int square = board.getMaxShips();
+            Check.thrown(IllegalStateException.class,
+                    () -> new Ship(board, square / 200, square % 200, Ship.Orientation.HORIZONTAL, 1));
+            Check.equal(null, board.getShip(square / 200, square % 200), "square of the refused ship");
+            Check.equal(last, board.getShip((square - 1) / 200, (square - 1) % 200), "square of the last ship");
+            Check.equal(board.getMaxShips(), board.getShips().size(), "ships");
+            board.hit((square - 1) / 200, (square - 1) % 200);
+            Check.isTrue(last.isSunk(), "last ship sunk");
+        });
+
+        Check.test("a square given twice in one salvo is told apart from one played before", () -> {
+            for (Board board : new Board[] {new Board(2, 3), new SparseBoard(2, 3), new ConcurrentBoard(2, 3)}) {
+                new Ship(board, 0, 0, Ship.Orientation.HORIZONTAL, 2);
+                new Ship(board, 1, 2, Ship.Orientation.HORIZONTAL, 1);
+                board.fire(1, 0);
+                SalvoResult salvo = board.fireAll(new int[] {0, 1, 0, 0, 5, 1, 0},
+                        new int[] {0, 0, 0, 1, 5, 1, 1});
+                String name = board.getClass().getName() + " ";
+                Check.equal(ShotResult.HIT, salvo.get(0), name + "first shot");
+                Check.equal(ShotResult.ALREADY_PLAYED, salvo.get(1), name + "square played before");
+                Check.equal(ShotResult.REPEATED, salvo.get(2), name + "first square again");
+                Check.equal(ShotResult.SUNK, salvo.get(3), name + "sinking shot");
+                Check.equal(ShotResult.OUT_OF_BOUNDS, salvo.get(4), name + "off the board");
+                Check.equal(ShotResult.MISS, salvo.get(5), name + "miss");
+                Check.equal(ShotResult.REPEATED, salvo.get(6), name + "sinking square again");
+                Check.equal(3, salvo.getFired(), name + "fired");
+                Check.equal(2, salvo.getHits(), name + "hits");
+                Check.equal(1, salvo.getSunk(), name + "sunk");
+                Check.equal(4, board.getShotCount(), name + "shots logged");
+                // a square played by an earlier salvo is not repeated in the next
+                board.fireAll(new int[] {1}, new int[] {1}, 1, salvo);
+                Check.equal(ShotResult.ALREADY_PLAYED, salvo.get(0), name + "square from the last salvo");
+            }
+        });
+
+        Check.test("display of a non-square board", () -> {
+            Board board = new Board(2, 3);
+            new Ship(board, 0, 1, Ship.Orientation.VERTICAL, 2);
+            board.hit(0, 1);
+            board.hit(1, 0);
+            Check.equal(encoded("\n  0 1 2 \n0 _ " + Cell.HIT_SHIP_SECTION + " _ \n1 . _ _ \n"), display(board, false), "display");
+            Check.equal(encoded("\n  0 1 2 \n0 _ " + Cell.HIT_SHIP_SECTION + " _ \n1 . S _ \n"), display(board, true), "fullDisplay");
+        });
+
+        Check.test("drawing to the same stream again allocates nothing", () -> {
+            Board board = new Board(10, 10);
+            new Ship(board, 2, 3, Ship.Orientation.VERTICAL, 4);
+            board.hit(2, 3);
+            board.hit(7, 7);
+            PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long thread = Thread.currentThread().getId();
+            for (int i = 0; i < 10000; i++) {
+                board.display(out);
+                board.fullDisplay(out);
+            }
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < 1000; i++) {
+                board.display(out);
+                board.fullDisplay(out);
+            }
+            // a little slack for the bean's own bookkeeping
+            Check.isTrue(threads.getThreadAllocatedBytes(thread) - before < 1000, "display allocated");
+        });
+    }
+
+    static void placeFleet(Board board, Reference reference, SplittableRandom random) throws Exception {
+        placeFleet(board, reference, random, false);
+    }
+
+    /**
+     * Try to place 20 ships at random, checking that the ones that do not fit are refused.
+     * @param reuse true to place them with placeShip instead of new Ship
+     */
+    static void placeFleet(Board board, Reference reference, SplittableRandom random, boolean reuse) throws Exception {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            Ship.Orientation ort = random.nextBoolean() ? Ship.Orientation.HORIZONTAL : Ship.Orientation.VERTICAL;
+            int length = 1 + random.nextInt(5);
+            int row = random.nextInt(board.getWidth());
+            int column = random.nextInt(board.getHeight());
+            Class<? extends Exception> expected = reference.place(row, column, ort, length);
+            if (expected == null) {
+                if (reuse) {
+                    board.placeShip(row, column, ort, length);
+                } else {
+                    new Ship(board, row, column, ort, length);
+                }
+            } else if (reuse) {
+                Check.thrown(expected, () -> board.placeShip(row, column, ort, length));
+            } else {
+                Check.thrown(expected, () -> new Ship(board, row, column, ort, length));
+            }
+        }
+    }
+
+    /**
+     * Fire at random until about half the squares have been shot at, comparing after every shot.
+     */
+    static void play(Board board, Reference reference, SplittableRandom random) throws Exception {
+        for (int shot = 0; shot < reference.rows * reference.columns / 2 + 1; shot++) {
+            hit(board, reference, random.nextInt(reference.rows + 2) - 1, random.nextInt(reference.columns + 2) - 1);
+            compare(board, reference);
+        }
+    }
+
+    /**
+     * Play random games of shots, undos and forks against the reference
+     * model: undo must return the board to where it was before the shot it
+     * takes back, and shots at a fork must not touch its board, nor the
+     * other way round.
+     */
+    static void undoAndFork(BiFunction<Integer, Integer, Board> factory, long seed) throws Exception {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int game = 0; game < 200; game++) {
+            int rows = 1 + random.nextInt(10);
+            int columns = 1 + random.nextInt(10);
+            Board board = factory.apply(rows, columns);
+            Reference reference = new Reference(rows, columns);
+            placeFleet(board, reference, random);
+            // the reference as it was before each shot in the board's log
+            Deque<Reference> before = new ArrayDeque<>();
+            for (int step = 0; step < rows * columns * 3; step++) {
+                int what = random.nextInt(10);
+                if (what < 6) {
+                    shoot(board, reference, before, random);
+                } else if (what < 9) {
+                    Check.equal(!before.isEmpty(), board.undo(), "undo");
+                    if (!before.isEmpty()) {
+                        reference = before.pop();
+                    }
+                } else {
+                    Board fork = board.fork();
+                    Check.equal(board.getClass(), fork.getClass(), "class of the fork");
+                    Check.isTrue(fork.occupancyWords() == board.occupancyWords(), "fork shares the ship layout");
+                    Reference forked = reference.copy();
+                    compare(fork, forked);
+                    play(fork, forked, random);
+                    compare(board, reference);
+                    while (fork.undo()) {
+                        // taking back the fork's shots, and those it was forked with, leaves the board alone too
+                    }
+                    compare(board, reference);
+                    forked.reset();
+                    compare(fork, forked);
+                    for (int shot = 0; shot < 5; shot++) {
+                        shoot(board, reference, before, random);
+                    }
+                    compare(fork, forked);
+                }
+                compare(board, reference);
+            }
+        }
+    }
+
+    /**
+     * Fire one random shot, pushing the reference as it was if the shot goes in the log.
+     */
+    static void shoot(Board board, Reference reference, Deque<Reference> before, SplittableRandom random) {
+        Reference previous = reference.copy();
+        int shots = board.getShotCount();
+        hit(board, reference, random.nextInt(reference.rows + 2) - 1, random.nextInt(reference.columns + 2) - 1);
+        if (board.getShotCount() > shots) {
+            before.push(previous);
+        }
+    }
+
+    static void hit(Board board, Reference reference, int row, int column) {
+        Class<? extends Exception> expected = reference.hit(row, column);
+        if (expected == null) {
+            try {
+                board.hit(row, column);
+            } catch (BattleshipException e) {
+                throw new AssertionError("hit " + row + " " + column + " threw " + e, e);
+            }
+        } else {
+            Check.thrown(expected, () -> board.hit(row, column));
+        }
+    }
+
+    static void compare(Board board, Reference reference) throws Exception {
+        for (int row = 0; row < reference.rows; row++) {
+            for (int column = 0; column < reference.columns; column++) {
+                Cell cell = board.getCell(row, column);
+                String where = "square " + row + " " + column;
+                Check.equal(reference.hit[row][column], cell.isHit(), where + " hit");
+                Check.equal(reference.displayHitStatus(row, column), cell.displayHitStatus(), where + " hit status");
+                Check.equal(reference.displayChar(row, column), cell.displayChar(), where + " display char");
+                Check.equal(reference.ship[row][column] != 0, board.getShip(row, column) != null, where + " ship");
+            }
+        }
+        Check.equal(reference.allSunk(), board.allSunk(), "all sunk");
+        Check.equal(reference.shipsRemaining(), board.getShipsRemaining(), "ships afloat");
+        Check.equal(Arrays.stream(reference.hits).sum(), board.getHitShipCells(), "hit ship squares");
+        Check.equal(encoded(reference.render(false)), display(board, false), "display");
+        Check.equal(encoded(reference.render(true)), display(board, true), "fullDisplay");
+    }
+
+    static String display(Board board, boolean reveal) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, Charset.defaultCharset());
+        if (reveal) {
+            board.fullDisplay(out);
+        } else {
+            board.display(out);
+        }
+        return bytes.toString(Charset.defaultCharset());
+    }
+
+    /**
+     * @return the text as it reads after a trip through the default charset,
+     *         which may not be able to encode every display character
+     */
+    static String encoded(String text) {
+        return new String(text.getBytes(Charset.defaultCharset()), Charset.defaultCharset());
+    }
+
+    /**
+     * The board as the original Cell and Ship classes kept it.
+     */
+    static class Reference {
+
+        final int rows;
+
+        final int columns;
+
+        /**
+         * 0 for water, otherwise 1 + the ship's index in lengths.
+         */
+        final int[][] ship;
+
+        final boolean[][] hit;
+
+        int[] lengths = new int[0];
+
+        int[] hits = new int[0];
+
+        Reference(int rows, int columns) {
+            this.rows = rows;
+            this.columns = columns;
+            this.ship = new int[rows][columns];
+            this.hit = new boolean[rows][columns];
+        }
+
+        /**
+         * @return the exception the placement should throw, or null if the ship fits
+         */
+        Class<? extends Exception> place(int row, int column, Ship.Orientation ort, int length) {
+            for (int i = 0; i < length; i++) {
+                int r = row + i * ort.rDelta;
+                int c = column + i * ort.cDelta;
+                if (r >= rows || c >= columns) {
+                    return OutOfBoundsException.class;
+                }
+                if (ship[r][c] != 0) {
+                    return OverlapException.class;
+                }
+            }
+            lengths = Arrays.copyOf(lengths, lengths.length + 1);
+            hits = Arrays.copyOf(hits, hits.length + 1);
+            lengths[lengths.length - 1] = length;
+            for (int i = 0; i < length; i++) {
+                ship[row + i * ort.rDelta][column + i * ort.cDelta] = lengths.length;
+            }
+            return null;
+        }
+
+        /**
+         * @return the exception the shot should throw, or null if it is fired
+         */
+        Class<? extends Exception> hit(int row, int column) {
+            if (row < 0 || row >= rows || column < 0 || column >= columns) {
+                return OutOfBoundsException.class;
+            }
+            if (hit[row][column]) {
+                return CellPlayedException.class;
+            }
+            hit[row][column] = true;
+            int id = ship[row][column];
+            if (id != 0 && hits[id - 1] < lengths[id - 1]) {
+                hits[id - 1]++;
+            }
+            return null;
+        }
+
+        Reference copy() {
+            Reference copy = new Reference(rows, columns);
+            for (int row = 0; row < rows; row++) {
+                copy.ship[row] = ship[row].clone();
+                copy.hit[row] = hit[row].clone();
+            }
+            copy.lengths = lengths.clone();
+            copy.hits = hits.clone();
+            return copy;
+        }
+
+        /**
+         * Take back every shot, as Board.reset does.
+         */
+        void reset() {
+            for (boolean[] row : hit) {
+                Arrays.fill(row, false);
+            }
+            Arrays.fill(hits, 0);
+        }
+
+        boolean sunk(int id) {
+            return hits[id - 1] == lengths[id - 1];
+        }
+
+        int shipsRemaining() {
+            int remaining = 0;
+            for (int id = 1; id <= lengths.length; id++) {
+                if (!sunk(id)) {
+                    remaining++;
+                }
+            }
+            return remaining;
+        }
+
+        boolean allSunk() {
+            for (int id = 1; id <= lengths.length; id++) {
+                if (!sunk(id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        char displayHitStatus(int row, int column) {
+            if (!hit[row][column]) {
+                return Cell.PRISTINE_WATER;
+            }
+            int id = ship[row][column];
+            if (id == 0) {
+                return Cell.HIT_WATER;
+            }
+            return sunk(id) ? Cell.SUNK_SHIP_SECTION : Cell.HIT_SHIP_SECTION;
+        }
+
+        char displayChar(int row, int column) {
+            if (!hit[row][column] && ship[row][column] != 0) {
+                return Cell.HIDDEN_SHIP_SECTION;
+            }
+            return displayHitStatus(row, column);
+        }
+
+        String render(boolean reveal) {
+            StringBuilder s = new StringBuilder("\n  ");
+            for (int column = 0; column < columns; column++) {
+                s.append(column).append(' ');
+            }
+            s.append('\n');
+            for (int row = 0; row < rows; row++) {
+                s.append(row).append(' ');
+                for (int column = 0; column < columns; column++) {
+                    s.append(reveal ? displayChar(row, column) : displayHitStatus(row, column)).append(' ');
+                }
+                s.append('\n');
+            }
+            return s.toString();
+        }
+    }
+
+    public static void main(String[] args) {
+        run();
+        Check.finish();
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.Objects;
+
+/**
+ * A small runner for the tests in this directory, which need nothing but
+ * the JDK.
+ *
+ * Compile and run every test from the repository root:
+ *   javac -encoding UTF-8 -d out *.java test/*.java
+ *   java -cp out AllTests
+ * or run one test class by its name instead of AllTests.
+ */
+final class Check {
+
+    /**
+     * The body of one test case.
+     */
+    interface Body {
+        void run() throws Exception;
+    }
+
+    private static int passed;
+
+    private static int failed;
+
+    private Check() {
+    }
+
+    /**
+     * Run one test case, reporting it as failed if it throws anything.
+     * @param name what the case checks
+     * @param body the checks
+     */
+    static void test(String name, Body body) {
+        try {
+            body.run();
+            passed++;
+        } catch (Throwable e) {
+            failed++;
+            System.out.println("FAIL " + name + ": " + e);
+            StackTraceElement[] trace = e.getStackTrace();
+            for (int i = 0; i < Math.min(trace.length, 5); i++) {
+                System.out.println("    at " + trace[i]);
+            }
+        }
+    }
+
+    static void equal(Object expected, Object actual, String what) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(what + ": expected <" + expected + "> but was <" + actual + ">");
+        }
+    }
+
+    static void equal(long expected, long actual, String what) {
+        if (expected != actual) {
+            throw new AssertionError(what + ": expected <" + expected + "> but was <" + actual + ">");
+        }
+    }
+
+    static void isTrue(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError(what);
+        }
+    }
+
+    /**
+     * Check that the body throws an exception of the given type.
+     * @return the exception
+     */
+    static <T extends Throwable> T thrown(Class<T> type, Body body) {
+        try {
+            body.run();
+        } catch (Throwable e) {
+            if (type.isInstance(e)) {
+                return type.cast(e);
+            }
+            throw new AssertionError("expected " + type.getSimpleName() + " but got " + e, e);
+        }
+        throw new AssertionError("expected " + type.getSimpleName() + " but nothing was thrown");
+    }
+
+    /**
+     * Print how many cases passed and exit with status 1 if any failed.
+     */
+    static void finish() {
+        System.out.println(passed + " passed, " + failed + " failed");
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}
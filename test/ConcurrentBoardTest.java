@@ -0,0 +1,217 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Checks that a concurrent board plays like a Board from one thread, and
+ * that when threads fight over the same squares every square is claimed
+ * once and every sink and the end of the game are reported once, both by
+ * fire and to listeners.
+ */
+public class ConcurrentBoardTest {
+
+    static void run() {
+        Check.test("concurrent board matches the reference model from one thread", () -> {
+            SplittableRandom random = new SplittableRandom(2);
+            for (int game = 0; game < 100; game++) {
+                int rows = 1 + random.nextInt(12);
+                int columns = 1 + random.nextInt(12);
+                ConcurrentBoard board = new ConcurrentBoard(rows, columns);
+                BoardTest.Reference reference = new BoardTest.Reference(rows, columns);
+                BoardTest.placeFleet(board, reference, random);
+                for (int shot = 0; shot < rows * columns * 2; shot++) {
+                    BoardTest.hit(board, reference, random.nextInt(rows + 2) - 1, random.nextInt(columns + 2) - 1);
+                    BoardTest.compare(board, reference);
+                }
+            }
+        });
+
+        Check.test("a hit on a ship that is already sunk counts as it does on Board", () -> {
+            for (Board board : new Board[] {new Board(1, 3), new ConcurrentBoard(1, 3)}) {
+                Ship ship = new Ship(board, 0, 0, Ship.Orientation.HORIZONTAL, 1);
+                // one ship on two squares, so the second hit finds it sunk
+                board.putShip(0, 1, ship);
+                Check.equal(ShotResult.GAME_OVER, board.fire(0, 0), "first square");
+                Check.equal(ShotResult.HIT, board.fire(0, 1), "second square");
+                Check.equal(1, board.getHitShipCells(), "hit ship squares");
+                Check.equal(1, ship.getNumOfHits(), "hits on the ship");
+                Check.isTrue(board.undo(), "undo");
+                Check.equal(1, board.getHitShipCells(), "hit ship squares after undo");
+                Check.isTrue(board.allSunk(), "all sunk after undo");
+            }
+        });
+
+        Check.test("a salvo is heard once, in one batch, with its sinkings after its shots", () -> {
+            ConcurrentBoard board = new ConcurrentBoard(2, 3);
+            new Ship(board, 0, 0, Ship.Orientation.HORIZONTAL, 1);
+            new Ship(board, 1, 0, Ship.Orientation.HORIZONTAL, 1);
+            GameEventsTest.Recorder recorder = new GameEventsTest.Recorder();
+            board.addListener(recorder);
+            board.fireAll(new int[] {0, 0, 0}, new int[] {0, 2, 0});
+            board.fireAll(new int[] {1, 0}, new int[] {0, 2});
+            Check.equal("[[SHOT 0 0, HIT 0 0, SHOT 0 2, MISS 0 2, SHIP_SUNK 0 0],"
+                    + " [SHOT 1 0, HIT 1 0, SHIP_SUNK 1 0, ALL_SUNK 1 0]]", recorder.batches.toString(), "batches");
+            board.flushEvents();
+            Check.equal(2, recorder.batches.size(), "batches after a flush");
+        });
+
+        Check.test("concurrent board undo takes shots back and forks are independent of their boards", () -> {
+            BoardTest.undoAndFork(ConcurrentBoard::new, 5);
+        });
+
+        Check.test("a fork made mid-game keeps its own counters and shot log through undo", () -> {
+            ConcurrentBoard board = new ConcurrentBoard(4, 4);
+            new Ship(board, 0, 0, Ship.Orientation.HORIZONTAL, 2);
+            new Ship(board, 2, 2, Ship.Orientation.HORIZONTAL, 1);
+            new Ship(board, 1, 3, Ship.Orientation.VERTICAL, 3);
+            board.fire(0, 0);
+            board.fire(3, 0);
+            ConcurrentBoard fork = board.fork();
+            Check.equal(ShotResult.SUNK, fork.fire(0, 1), "fork sinks the first ship");
+            Check.equal(ShotResult.SUNK, fork.fire(2, 2), "fork sinks the second ship");
+            Check.equal(ShotResult.SUNK, board.fire(2, 2), "board sinks the second ship");
+            Check.equal(ShotResult.MISS, board.fire(1, 1), "board misses");
+            checkStatus(board, "0 12 10* 5", 2, 2, "board after firing");
+            checkStatus(fork, "0 12 1* 10*", 1, 3, "fork after firing");
+
+            Check.isTrue(board.undo() && board.undo(), "undo on the board");
+            checkStatus(board, "0 12", 3, 1, "board after undo");
+            checkStatus(fork, "0 12 1* 10*", 1, 3, "fork after the board's undo");
+            Check.isTrue(!board.isHit(2, 2) && fork.isHit(2, 2), "square taken back on the board only");
+
+            Check.isTrue(fork.undo(), "undo on the fork");
+            checkStatus(fork, "0 12 1*", 2, 2, "fork after undo");
+            checkStatus(board, "0 12", 3, 1, "board after the fork's undo");
+
+            Check.equal(ShotResult.SUNK, board.fire(0, 1), "board sinks the first ship");
+            Check.equal(ShotResult.ALREADY_PLAYED, fork.fire(0, 1), "fork already sank it");
+            Check.equal(ShotResult.HIT, fork.fire(3, 3), "fork hits the third ship");
+            checkStatus(board, "0 12 1*", 2, 2, "board after firing again");
+            checkStatus(fork, "0 12 1* 15", 2, 3, "fork after firing again");
+        });
+
+        Check.test("threads firing at every square claim each once and are heard once", () -> {
+            for (int round = 0; round < 20; round++) {
+                int size = 24;
+                ConcurrentBoard board = new ConcurrentBoard(size, size);
+                board.setHeadless(true);
+                List<Ship> fleet = new ArrayList<>();
+                for (int row = 0; row < size; row += 3) {
+                    for (int column = 0; column + 4 <= size; column += 5) {
+                        fleet.add(new Ship(board, row, column, Ship.Orientation.HORIZONTAL, 1 + (row + column) % 4));
+                    }
+                }
+                int threads = 4;
+                AtomicIntegerArray claims = new AtomicIntegerArray(size * size);
+                AtomicIntegerArray sinks = new AtomicIntegerArray(size * size);
+                AtomicIntegerArray endings = new AtomicIntegerArray(1);
+                AtomicIntegerArray heard = new AtomicIntegerArray(GameEvents.Type.values().length);
+                ThreadLocal<int[]> lastHeard = ThreadLocal.withInitial(() -> new int[] {-1});
+                // problems seen on the shooting threads, where Check cannot be called
+                AtomicIntegerArray misplaced = new AtomicIntegerArray(1);
+                board.addListener(events -> {
+                    if (events.size() < 2 || events.size() > 4) {
+                        misplaced.incrementAndGet(0);
+                    }
+                    for (int i = 0; i < events.size(); i++) {
+                        heard.incrementAndGet(events.getType(i).ordinal());
+                        if (events.getRow(i) != events.getRow(0) || events.getColumn(i) != events.getColumn(0)) {
+                            misplaced.incrementAndGet(0);
+                        }
+                    }
+                    lastHeard.get()[0] = events.getRow(0) * size + events.getColumn(0);
+                });
+                board.setHeadless(false);
+                CountDownLatch start = new CountDownLatch(1);
+                Thread[] shooters = new Thread[threads];
+                for (int t = 0; t < threads; t++) {
+                    SplittableRandom order = new SplittableRandom(round * threads + t);
+                    shooters[t] = new Thread(() -> {
+                        int[] squares = new int[size * size];
+                        for (int i = 0; i < squares.length; i++) {
+                            int j = order.nextInt(i + 1);
+                            squares[i] = squares[j];
+                            squares[j] = i;
+                        }
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int square : squares) {
+                            ShotResult result = board.fire(square / size, square % size);
+                            if (result.isFired()) {
+                                claims.incrementAndGet(square);
+                                if (lastHeard.get()[0] != square) {
+                                    misplaced.incrementAndGet(0);
+                                }
+                            }
+                            if (result.isSunk()) {
+                                sinks.incrementAndGet(square);
+                            }
+                            if (result == ShotResult.GAME_OVER) {
+                                endings.incrementAndGet(0);
+                            }
+                        }
+                    });
+                    shooters[t].start();
+                }
+                start.countDown();
+                for (Thread shooter : shooters) {
+                    shooter.join();
+                }
+                int sunk = 0;
+                for (int square = 0; square < size * size; square++) {
+                    Check.equal(1, claims.get(square), "claims of square " + square);
+                    sunk += sinks.get(square);
+                }
+                Check.equal(fleet.size(), sunk, "sinks");
+                Check.equal(1, endings.get(0), "game overs");
+                Check.equal(0, misplaced.get(0), "shots heard late or mixed with others");
+                Check.equal(size * size, heard.get(GameEvents.Type.SHOT.ordinal()), "shots heard");
+                Check.equal(size * size, heard.get(GameEvents.Type.HIT.ordinal())
+                        + heard.get(GameEvents.Type.MISS.ordinal()), "hits and misses heard");
+                Check.equal(fleet.size(), heard.get(GameEvents.Type.SHIP_SUNK.ordinal()), "sinkings heard");
+                Check.equal(1, heard.get(GameEvents.Type.ALL_SUNK.ordinal()), "ends heard");
+                Check.isTrue(board.allSunk(), "all sunk");
+                Check.equal(0, board.getShipsRemaining(), "ships afloat");
+                Check.equal(size * size, board.getShotCount(), "shots");
+                boolean[] logged = new boolean[size * size];
+                int sinkingShots = 0;
+                for (int n = 0; n < board.getShotCount(); n++) {
+                    Check.isTrue(!logged[board.getShot(n)], "square " + board.getShot(n) + " logged twice");
+                    logged[board.getShot(n)] = true;
+                    if (board.isSinkingShot(n)) {
+                        sinkingShots++;
+                    }
+                }
+                Check.equal(fleet.size(), sinkingShots, "sinking shots in the log");
+                for (Ship ship : fleet) {
+                    Check.equal(Cell.SUNK_SHIP_SECTION, board.getCell(ship.getRow(), ship.getColumn()).displayChar(),
+                            "ship at " + ship.getRow() + " " + ship.getColumn());
+                }
+            }
+        });
+    }
+
+    /**
+     * Check a board's shot log, written as square indexes with * after the
+     * sinking shots, and its fleet status.
+     */
+    static void checkStatus(Board board, String log, int shipsRemaining, int hitShipCells, String what) {
+        StringBuilder shots = new StringBuilder();
+        for (int n = 0; n < board.getShotCount(); n++) {
+            shots.append(n == 0 ? "" : " ").append(board.getShot(n)).append(board.isSinkingShot(n) ? "*" : "");
+        }
+        Check.equal(log, shots.toString(), what + ": shot log");
+        Check.equal(shipsRemaining, board.getShipsRemaining(), what + ": ships afloat");
+        Check.equal(hitShipCells, board.getHitShipCells(), what + ": hit ship squares");
+    }
+
+    public static void main(String[] args) {
+        run();
+        Check.finish();
+    }
+}
@@ -0,0 +1,159 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks what listeners hear from a board: the events of each shot in
+ * order, in batches that never split a shot, delivered when a batch fills,
+ * when the last ship sinks and on flushEvents, and nothing at all from a
+ * headless board. Also checks the lines ConsoleSink writes for them.
+ */
+public class GameEventsTest {
+
+    static void run() {
+        Check.test("each shot's events come in order", () -> {
+            Board board = new Board(3, 3);
+            new Ship(board, 0, 0, Ship.Orientation.HORIZONTAL, 2);
+            new Ship(board, 2, 2, Ship.Orientation.HORIZONTAL, 1);
+            Recorder recorder = new Recorder();
+            board.addListener(recorder);
+            board.fire(1, 1);
+            board.fire(0, 0);
+            board.fire(0, 1);
+            board.fire(0, 1);
+            board.fire(5, 5);
+            Check.equal(0, recorder.batches.size(), "batches before a flush");
+            board.flushEvents();
+            Check.equal("[[SHOT 1 1, MISS 1 1, SHOT 0 0, HIT 0 0, SHOT 0 1, HIT 0 1, SHIP_SUNK 0 1]]",
+                    recorder.batches.toString(), "after a flush");
+            board.flushEvents();
+            Check.equal(1, recorder.batches.size(), "batches after flushing nothing");
+            board.fire(2, 2);
+            Check.equal("[SHOT 2 2, HIT 2 2, SHIP_SUNK 2 2, ALL_SUNK 2 2]",
+                    recorder.batches.get(1).toString(), "the last ship's batch, delivered without a flush");
+        });
+
+        Check.test("a full batch is delivered without splitting a shot", () -> {
+            Board board = new Board(30, 30);
+            new Ship(board, 29, 0, Ship.Orientation.HORIZONTAL, 30);
+            Recorder recorder = new Recorder();
+            board.addListener(recorder);
+            int shots = 0;
+            for (int row = 0; row < 29; row++) {
+                for (int column = 0; column < 30; column++) {
+                    board.fire(row, column);
+                    shots++;
+                }
+            }
+            Check.isTrue(recorder.batches.size() > 1, "batches " + recorder.batches.size());
+            int beforeFlush = 0;
+            for (List<String> batch : recorder.batches) {
+                Check.isTrue(batch.get(0).startsWith("SHOT "), "batch starts with " + batch.get(0));
+                Check.isTrue(batch.get(batch.size() - 1).startsWith("MISS "), "batch ends with " + batch.get(batch.size() - 1));
+                Check.isTrue(batch.size() <= recorder.batches.get(0).size(), "batch bigger than the first");
+                beforeFlush += batch.size();
+            }
+            board.flushEvents();
+            int delivered = 0;
+            for (List<String> batch : recorder.batches) {
+                delivered += batch.size();
+            }
+            Check.equal(2 * shots, delivered, "events delivered");
+            Check.isTrue(beforeFlush < delivered, "some events waited for the flush");
+        });
+
+        Check.test("a salvo reports its sinkings after its shots", () -> {
+            Board board = new Board(2, 3);
+            new Ship(board, 0, 0, Ship.Orientation.HORIZONTAL, 1);
+            new Ship(board, 1, 0, Ship.Orientation.HORIZONTAL, 1);
+            Recorder recorder = new Recorder();
+            board.addListener(recorder);
+            board.fireAll(new int[] {0, 0, 1}, new int[] {0, 2, 0});
+            Check.equal("[[SHOT 0 0, HIT 0 0, SHOT 0 2, MISS 0 2, SHOT 1 0, HIT 1 0,"
+                    + " SHIP_SUNK 0 0, SHIP_SUNK 1 0, ALL_SUNK 1 0]]", recorder.batches.toString(), "batches");
+        });
+
+        Check.test("a headless board and a removed listener hear nothing", () -> {
+            Board board = new Board(2, 2);
+            new Ship(board, 0, 0, Ship.Orientation.HORIZONTAL, 1);
+            Recorder recorder = new Recorder();
+            board.addListener(recorder);
+            board.setHeadless(true);
+            board.fire(1, 1);
+            board.fire(0, 0);
+            board.flushEvents();
+            Check.equal(0, recorder.batches.size(), "batches from a headless board");
+            board.setHeadless(false);
+            board.reset();
+            board.removeListener(recorder);
+            board.fire(0, 0);
+            board.flushEvents();
+            Check.equal(0, recorder.batches.size(), "batches after removeListener");
+        });
+
+        Check.test("the console sink logs a line per event, in order with its stream", () -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ConsoleSink sink = new ConsoleSink(bytes);
+            Board board = new Board(2, 2);
+            new Ship(board, 0, 0, Ship.Orientation.HORIZONTAL, 2);
+            board.addListener(sink);
+            PrintStream out = new PrintStream(sink.stream(), false, StandardCharsets.US_ASCII);
+            out.print("before" + System.lineSeparator());
+            board.fire(1, 1);
+            board.fire(0, 0);
+            board.flushEvents();
+            out.print("between" + System.lineSeparator());
+            board.fire(0, 1);
+            sink.close();
+            Check.equal(String.join(System.lineSeparator(), "before", "shot 1 1", "miss 1 1", "shot 0 0", "hit 0 0",
+                    "between", "shot 0 1", "hit 0 1", "sunk 0 1", "all sunk", ""),
+                    bytes.toString(StandardCharsets.US_ASCII), "log");
+        });
+
+        Check.test("the game prints the sunk message through its listener", () -> {
+            for (boolean incremental : new boolean[] {false, true}) {
+                Battleship game = new Battleship(2, 2);
+                new Ship(game.getBoard(), 0, 0, Ship.Orientation.HORIZONTAL, 1);
+                new Ship(game.getBoard(), 1, 0, Ship.Orientation.HORIZONTAL, 1);
+                game.setIncrementalDisplay(incremental);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                game.setOutput(new PrintStream(bytes, true, StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+                game.start();
+                game.execute("h 0 0");
+                game.execute("h 1 1");
+                game.execute("h 1 0");
+                String output = bytes.toString(StandardCharsets.UTF_8);
+                Check.equal(2, output.split(Ship.SUNK_MESSAGE, -1).length - 1, "sunk messages when incremental is " + incremental);
+                // a whole board is drawn under the message, the changes to one above it
+                int message = output.lastIndexOf(Ship.SUNK_MESSAGE);
+                int drawing = incremental ? output.lastIndexOf("\u001b[") : output.lastIndexOf("\n  0 1 \n");
+                Check.isTrue(incremental ? drawing < message : message < drawing,
+                        "sunk message placed when incremental is " + incremental);
+            }
+        });
+    }
+
+    /**
+     * Writes down each batch it hears, since the board reuses the batch.
+     */
+    static class Recorder implements GameListener {
+
+        final List<List<String>> batches = new ArrayList<>();
+
+        @Override
+        public void onEvents(GameEvents events) {
+            List<String> batch = new ArrayList<>();
+            for (int i = 0; i < events.size(); i++) {
+                batch.add(events.getType(i) + " " + events.getRow(i) + " " + events.getColumn(i));
+            }
+            batches.add(batch);
+        }
+    }
+
+    public static void main(String[] args) {
+        run();
+        Check.finish();
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Journals games to a temporary directory and checks what recovery makes of
+ * the files, whole and damaged.
+ */
+public class MoveJournalTest {
+
+    /**
+     * Bytes in a segment's header and in each of its records.
+     */
+    static final int HEADER_SIZE = 8;
+
+    static final int RECORD_SIZE = 12;
+
+    static void run() {
+        Check.test("an empty directory holds no game", () -> {
+            Path directory = Files.createTempDirectory("journal");
+            try {
+                Check.equal(null, MoveJournal.recover(directory), "recovered");
+                Check.equal(null, MoveJournal.recover(directory.resolve("missing")), "recovered from nowhere");
+            } finally {
+                delete(directory);
+            }
+        });
+
+        Check.test("every recorded shot is recovered, across snapshots", () -> {
+            for (int interval : new int[] {1, 3, 1000}) {
+                Path directory = Files.createTempDirectory("journal");
+                try {
+                    Board board = newBoard();
+                    try (MoveJournal journal = MoveJournal.open(directory, board, interval, false)) {
+                        play(board, journal, 40, new SplittableRandom(interval));
+                    }
+                    BoardFileTest.assertSame(board, MoveJournal.recover(directory));
+                    Check.isTrue(segments(directory).size() <= 2, "segments left after compaction: " + segments(directory));
+                } finally {
+                    delete(directory);
+                }
+            }
+        });
+
+        Check.test("a torn last record is dropped and the rest replayed", () -> {
+            Path directory = Files.createTempDirectory("journal");
+            try {
+                Board board = newBoard();
+                Board before = null;
+                try (MoveJournal journal = MoveJournal.open(directory, board, 1000, false)) {
+                    SplittableRandom random = new SplittableRandom(11);
+                    play(board, journal, 29, random);
+                    before = board.copy();
+                    play(board, journal, 1, random);
+                }
+                Path segment = last(segments(directory));
+                for (int torn = 1; torn < RECORD_SIZE; torn++) {
+                    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                        channel.truncate(HEADER_SIZE + 29L * RECORD_SIZE + RECORD_SIZE - torn);
+                    }
+                    BoardFileTest.assertSame(before, MoveJournal.recover(directory));
+                }
+                try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                    channel.truncate(3);
+                }
+                Check.equal(0, MoveJournal.recover(directory).getShotCount(), "shots after a torn header");
+            } finally {
+                delete(directory);
+            }
+        });
+
+        Check.test("a corrupt record ends the replay", () -> {
+            Path directory = Files.createTempDirectory("journal");
+            try {
+                Board board = newBoard();
+                Board before = null;
+                try (MoveJournal journal = MoveJournal.open(directory, board, 1000, false)) {
+                    SplittableRandom random = new SplittableRandom(12);
+                    play(board, journal, 10, random);
+                    before = board.copy();
+                    play(board, journal, 10, random);
+                }
+                Path segment = last(segments(directory));
+                try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                    channel.write(ByteBuffer.wrap(new byte[] {(byte) 0x55}), HEADER_SIZE + 10L * RECORD_SIZE + 2);
+                }
+                BoardFileTest.assertSame(before, MoveJournal.recover(directory));
+            } finally {
+                delete(directory);
+            }
+        });
+
+        Check.test("an unreadable snapshot is reported", () -> {
+            Path directory = Files.createTempDirectory("journal");
+            try {
+                Board board = newBoard();
+                try (MoveJournal journal = MoveJournal.open(directory, board, 1000, false)) {
+                    play(board, journal, 5, new SplittableRandom(13));
+                }
+                try (Stream<Path> files = Files.list(directory)) {
+                    for (Path snapshot : files.filter(f -> f.toString().endsWith(".bin")).collect(Collectors.toList())) {
+                        Files.write(snapshot, new byte[] {1, 2, 3});
+                    }
+                }
+                Check.thrown(IOException.class, () -> MoveJournal.recover(directory));
+            } finally {
+                delete(directory);
+            }
+        });
+    }
+
+    static Board newBoard() throws BattleshipException {
+        Board board = new Board(10, 10);
+        new Ship(board, 0, 0, Ship.Orientation.HORIZONTAL, 5);
+        new Ship(board, 2, 9, Ship.Orientation.VERTICAL, 4);
+        new Ship(board, 7, 3, Ship.Orientation.HORIZONTAL, 3);
+        return board;
+    }
+
+    /**
+     * Fire at squares not yet played and journal each shot.
+     */
+    static void play(Board board, MoveJournal journal, int shots, SplittableRandom random) throws IOException {
+        while (shots > 0) {
+            int row = random.nextInt(board.getWidth());
+            int column = random.nextInt(board.getHeight());
+            if (board.fire(row, column).isFired()) {
+                journal.record(row, column);
+                shots--;
+            }
+        }
+    }
+
+    static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.toString().endsWith(".log")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    static Path last(List<Path> paths) {
+        return paths.get(paths.size() - 1);
+    }
+
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        run();
+        Check.finish();
+    }
+}
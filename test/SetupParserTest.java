@@ -0,0 +1,103 @@
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks what the setup parser reads from good files and where it says bad
+ * files go wrong.
+ */
+public class SetupParserTest {
+
+    static void run() {
+        Check.test("ships are read in order, with any case and any spacing", () -> {
+            Check.equal("5x6 [0 0 HORIZONTAL 2, 1 4 VERTICAL 3, -1 2 HORIZONTAL 0]",
+                    parse("5\t6\r\n0 0 horizontal 2\n  1\t4  VERTICAL 3  \r\n-1 +2 HoRiZoNtAl 0"), "parsed");
+        });
+
+        Check.test("a file read through a file channel parses the same", () -> {
+            Path file = Files.createTempFile("setup", ".txt");
+            try {
+                Files.write(file, "3 3\n2 0 HORIZONTAL 3\n".getBytes(StandardCharsets.US_ASCII));
+                Recorder recorder = new Recorder();
+                SetupParser.parse(file, recorder);
+                Check.equal("3x3 [2 0 HORIZONTAL 3]", recorder.toString(), "parsed");
+            } finally {
+                Files.delete(file);
+            }
+        });
+
+        Check.test("errors give the line and column where the problem starts", () -> {
+            error("", 1, 1, "missing board dimensions");
+            error("5\n", 1, 2, "expected the number of columns");
+            error("0 5\n", 1, 1, "the number of rows must be at least 1");
+            error("5 5 5\n", 1, 5, "unexpected text at end of line");
+            error("5 5\n0 0 DIAGONAL 2\n", 2, 5, "expected HORIZONTAL or VERTICAL");
+            error("5 5\n0 x0 VERTICAL 2\n", 2, 3, "expected the ship's column");
+            error("5 5\n0 0 HORIZONTAL 2 x\n", 2, 18, "unexpected text at end of line");
+            error("5 5\n0 0 HORIZONTAL 2\n\n", 3, 1, "blank line");
+            error("5 5\n0 0 HORIZONTAL 2\n \t\n1 1 VERTICAL 2\n", 3, 3, "blank line");
+            error("5 5\n 99999999999 0 VERTICAL 1\n", 2, 2, "the ship's row is too large");
+            error("5 5\n0 0 VERTICAL 2x\n", 2, 14, "expected the ship's length");
+            error("5 5\n1 1 HORIZONTAL\n", 2, 15, "expected the ship's length");
+        });
+
+        Check.test("ships before a bad line are still passed on", () -> {
+            Recorder recorder = new Recorder();
+            Check.thrown(SetupFormatException.class, () -> SetupParser.parse(channel("4 4\n0 0 VERTICAL 2\nbad\n"), recorder));
+            Check.equal("4x4 [0 0 VERTICAL 2]", recorder.toString(), "parsed");
+        });
+    }
+
+    static String parse(String text) throws Exception {
+        Recorder recorder = new Recorder();
+        SetupParser.parse(channel(text), recorder);
+        return recorder.toString();
+    }
+
+    static void error(String text, int line, int column, String problem) {
+        SetupFormatException e = Check.thrown(SetupFormatException.class, () -> parse(text));
+        String what = "\"" + text.replace("\n", "\\n") + "\"";
+        Check.equal(line, e.line, what + " line");
+        Check.equal(column, e.column, what + " column");
+        Check.isTrue(e.getMessage().endsWith(": " + problem), what + " message " + e.getMessage());
+    }
+
+    static ReadableByteChannel channel(String text) {
+        return Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * Writes down everything the parser passes on.
+     */
+    static class Recorder implements SetupParser.Handler {
+
+        private String dimensions;
+
+        private final List<String> ships = new ArrayList<>();
+
+        @Override
+        public void dimensions(int rows, int columns) {
+            dimensions = rows + "x" + columns;
+        }
+
+        @Override
+        public void ship(int row, int column, Ship.Orientation orientation, int length) {
+            ships.add(row + " " + column + " " + orientation + " " + length);
+        }
+
+        @Override
+        public String toString() {
+            return dimensions + " " + ships;
+        }
+    }
+
+    public static void main(String[] args) {
+        run();
+        Check.finish();
+    }
+}